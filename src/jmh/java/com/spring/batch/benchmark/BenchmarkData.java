@@ -0,0 +1,43 @@
+package com.spring.batch.benchmark;
+
+import com.spring.batch.model.User;
+
+/**
+ * Datos sintéticos y deterministas para los benchmarks: mismas líneas y usuarios en cada ejecución.
+ */
+final class BenchmarkData {
+
+    private static final String[] NAMES = {"John", "Ana", " maria ", "Pedro", "Lucía", "Sofia", "  Carlos", "Elena"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Líneas CSV con el formato de data/users.csv (id,name,email,active), sin cabecera.
+     */
+    static String[] csvLines(int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            User user = user(i);
+            lines[i] = user.getId() + "," + user.getName() + "," + user.getEmail() + "," + user.isActive();
+        }
+        return lines;
+    }
+
+    /**
+     * Usuarios con ids 1..count; uno de cada cuatro inactivo, todos con email válido.
+     */
+    static User[] users(int count) {
+        User[] users = new User[count];
+        for (int i = 0; i < count; i++) {
+            users[i] = user(i);
+        }
+        return users;
+    }
+
+    private static User user(int i) {
+        String name = NAMES[i % NAMES.length];
+        String email = name.trim().toLowerCase() + (i + 1) + "@mail.com";
+        return new User((long) i + 1, name, email, i % 4 != 3);
+    }
+}
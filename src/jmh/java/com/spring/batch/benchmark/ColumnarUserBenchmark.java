@@ -0,0 +1,111 @@
+package com.spring.batch.benchmark;
+
+import com.spring.batch.columnar.ColumnarUserItemReader;
+import com.spring.batch.columnar.ColumnarUserItemWriter;
+import com.spring.batch.model.User;
+import com.spring.batch.reader.UserLineMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamReader;
+import org.springframework.batch.infrastructure.item.file.FlatFileItemReader;
+import org.springframework.batch.infrastructure.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Releer resultados intermedios: el mismo conjunto de usuarios en CSV (flatFileUserReader) y en
+ * el fichero columnar. Una operación es leer el fichero completo.
+ *
+ * - csv: FlatFileItemReader + UserLineMapper
+ * - columnar: ColumnarUserItemReader sin filtro
+ * - columnarRange: ColumnarUserItemReader con un rango del 10% de los ids (salta row groups)
+ *
+ * Los tamaños de ambos ficheros se imprimen en el setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnarUserBenchmark {
+
+    @Param({"100000"})
+    public int users;
+
+    private Path csvFile;
+    private Path columnarFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        csvFile = Files.createTempFile("users", ".csv");
+        columnarFile = Files.createTempFile("users", ".ucol");
+        Files.write(csvFile, Arrays.asList(BenchmarkData.csvLines(users)));
+
+        ColumnarUserItemWriter writer = new ColumnarUserItemWriter("benchmarkColumnar", columnarFile, 8192);
+        writer.open(new ExecutionContext());
+        writer.write(new Chunk<>(BenchmarkData.users(users)));
+        writer.close();
+        System.out.println("csv=" + Files.size(csvFile) + " bytes, columnar=" + Files.size(columnarFile) + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(csvFile);
+        Files.deleteIfExists(columnarFile);
+    }
+
+    @Benchmark
+    public long csv() throws Exception {
+        FlatFileItemReader<User> reader = new FlatFileItemReaderBuilder<User>()
+                .name("benchmarkCsv")
+                .resource(new FileSystemResource(csvFile))
+                .lineMapper(new UserLineMapper())
+                .build();
+        return readAll(reader);
+    }
+
+    @Benchmark
+    public long columnar() throws Exception {
+        ColumnarUserItemReader reader = new ColumnarUserItemReader("benchmarkColumnar", columnarFile, null, null);
+        return readAll(reader);
+    }
+
+    @Benchmark
+    public long columnarRange() throws Exception {
+        long from = users / 2;
+        ColumnarUserItemReader reader = new ColumnarUserItemReader("benchmarkColumnar", columnarFile,
+                from, from + users / 10);
+        return readAll(reader);
+    }
+
+    private static long readAll(ItemStreamReader<User> reader) throws Exception {
+        reader.open(new ExecutionContext());
+        long sum = 0;
+        try {
+            User user;
+            while ((user = reader.read()) != null) {
+                sum += user.getId();
+            }
+        } finally {
+            reader.close();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,121 @@
+package com.spring.batch.benchmark;
+
+import com.spring.batch.config.UserSkipPolicy;
+import com.spring.batch.model.User;
+import com.spring.batch.writer.CompositeUserWriter;
+import com.spring.batch.writer.DeadLetterUserWriter;
+import com.spring.batch.writer.UserFileItemWriter;
+import com.spring.batch.writer.UserUpsertItemWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompositeUserWriter con sus destinos reales: UserFileItemWriter sobre un fichero temporal y
+ * UserUpsertItemWriter (MERGE) sobre una base H2 en memoria. Una operación es un chunk:
+ * write + update dentro de una transacción, igual que el commit de un chunk en el step.
+ *
+ * Los ids se repiten en cada operación, así que el MERGE actualiza filas existentes
+ * y la tabla no crece durante la medición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompositeUserWriterBenchmark {
+
+    @Param({"100", "1000"})
+    public int chunkSize;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Path file;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private CompositeUserWriter writer;
+    private ExecutionContext executionContext;
+    private Chunk<User> chunk;
+
+    @Setup
+    public void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:benchmark-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE processed_users ("
+                + "id BIGINT PRIMARY KEY, name VARCHAR(255), email VARCHAR(255), active BOOLEAN)");
+        JdbcTransactionManager transactionManager = new JdbcTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        file = Files.createTempFile("processed_users", ".txt");
+        UserFileItemWriter fileWriter = new UserFileItemWriter("fileUserWriter", file, 1 << 20, false);
+        UserUpsertItemWriter dbWriter = new UserUpsertItemWriter(dataSource, transactionManager,
+                UserUpsertItemWriter.Mode.MERGE, 100);
+
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of(
+                "fileInsertUserWriter", fileWriter,
+                "dbUpsertUserWriter", dbWriter));
+        writer = new CompositeUserWriter(beanFactory, List.of("fileInsertUserWriter", "dbUpsertUserWriter"), parallel,
+                transactionManager, new UserSkipPolicy(0, 0),
+                new DeadLetterUserWriter(dataSource, transactionManager, 500));
+
+        chunk = new Chunk<>(Arrays.asList(BenchmarkData.users(chunkSize)));
+    }
+
+    // Con un ExecutionContext vacío la apertura trunca el fichero: cada iteración empieza de cero
+    @Setup(Level.Iteration)
+    public void open() {
+        executionContext = new ExecutionContext();
+        writer.open(executionContext);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        writer.close();
+    }
+
+    @Benchmark
+    public void writeChunk() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                writer.write(chunk);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            writer.update(executionContext);
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        writer.destroy();
+        jdbcTemplate.execute("SHUTDOWN");
+        Files.deleteIfExists(file);
+    }
+}
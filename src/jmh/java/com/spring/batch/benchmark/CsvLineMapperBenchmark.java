@@ -0,0 +1,71 @@
+package com.spring.batch.benchmark;
+
+import com.spring.batch.model.User;
+import com.spring.batch.reader.UserLineMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.infrastructure.item.file.LineMapper;
+import org.springframework.batch.infrastructure.item.file.mapping.BeanWrapperFieldSetMapper;
+import org.springframework.batch.infrastructure.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.infrastructure.item.file.transform.DelimitedLineTokenizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapeo de una línea CSV a User, tal como lo hace flatFileUserReader.
+ *
+ * - userLineMapper: el LineMapper actual del reader
+ * - delimitedLineMapper: DelimitedLineTokenizer + BeanWrapperFieldSetMapper, la configuración
+ *   original, como referencia
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvLineMapperBenchmark {
+
+    private static final int LINES = 1024; // potencia de 2 para recorrerlas con una máscara
+
+    private String[] lines;
+    private LineMapper<User> userLineMapper;
+    private LineMapper<User> delimitedLineMapper;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        lines = BenchmarkData.csvLines(LINES);
+        userLineMapper = new UserLineMapper();
+
+        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
+        tokenizer.setDelimiter(",");
+        tokenizer.setNames("id", "name", "email", "active");
+        BeanWrapperFieldSetMapper<User> fieldMapper = new BeanWrapperFieldSetMapper<>();
+        fieldMapper.setTargetType(User.class);
+        DefaultLineMapper<User> lineMapper = new DefaultLineMapper<>();
+        lineMapper.setLineTokenizer(tokenizer);
+        lineMapper.setFieldSetMapper(fieldMapper);
+        delimitedLineMapper = lineMapper;
+    }
+
+    @Benchmark
+    public User userLineMapper() throws Exception {
+        int i = index++ & (LINES - 1);
+        return userLineMapper.mapLine(lines[i], i);
+    }
+
+    @Benchmark
+    public User delimitedLineMapper() throws Exception {
+        int i = index++ & (LINES - 1);
+        return delimitedLineMapper.mapLine(lines[i], i);
+    }
+}
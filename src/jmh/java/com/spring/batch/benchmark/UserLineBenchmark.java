@@ -0,0 +1,63 @@
+package com.spring.batch.benchmark;
+
+import com.spring.batch.model.User;
+import com.spring.batch.writer.UserLineEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generación de las líneas de un chunk para el fichero de salida, una operación por chunk.
+ *
+ * - toStringLines: User.toString por línea, como el PassThroughLineAggregator original
+ * - encodedLines: UserLineEncoder sobre un buffer reutilizado, como UserFileItemWriter.stage
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserLineBenchmark {
+
+    @Param({"100", "1000"})
+    public int chunkSize;
+
+    private User[] users;
+    private UserLineEncoder.Buffer buffer;
+
+    @Setup
+    public void setUp() {
+        users = BenchmarkData.users(chunkSize);
+        buffer = new UserLineEncoder.Buffer(8192);
+    }
+
+    @Benchmark
+    public byte[] toStringLines() {
+        StringBuilder lines = new StringBuilder();
+        for (User user : users) {
+            lines.append(user).append('\n');
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodedLines() {
+        buffer.reset();
+        for (User user : users) {
+            UserLineEncoder.encode(user, buffer);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,41 @@
+package com.spring.batch.columnar;
+
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Writer y reader del fichero columnar de usuarios procesados (batch.columnar.path).
+ *
+ * Para generarlo, añadir columnarUserWriter a batch.writer.delegates; con
+ * batch.columnar.step-two-input=true, stepTwo lo lee en lugar del CSV de entrada.
+ */
+@Configuration
+public class ColumnarUserConfig {
+
+    @Bean
+    public ColumnarUserItemWriter columnarUserWriter(
+            @Value("${batch.columnar.path:output/processed_users.ucol}") String path,
+            @Value("${batch.columnar.row-group-size:8192}") int rowGroupSize) {
+        return new ColumnarUserItemWriter(
+                "columnarUserWriter",   // nombre interno del writer
+                Path.of(path),          // fichero destino
+                rowGroupSize);          // filas máximas por row group
+    }
+
+    /**
+     * Reader del fichero columnar. Dentro de una partición por ids (UserIdRangePartitioner) solo
+     * lee los row groups del rango del worker; fuera de ella, el fichero completo.
+     */
+    @Bean
+    @StepScope
+    public ColumnarUserItemReader columnarUserReader(
+            @Value("${batch.columnar.path:output/processed_users.ucol}") String path,
+            @Value("#{stepExecutionContext['minId']}") Long minId,
+            @Value("#{stepExecutionContext['maxId']}") Long maxId) {
+        return new ColumnarUserItemReader("columnarUserReader", Path.of(path), minId, maxId);
+    }
+}
@@ -0,0 +1,187 @@
+package com.spring.batch.columnar;
+
+import com.spring.batch.columnar.UserColumnarFormat.RowGroup;
+import com.spring.batch.model.User;
+import org.springframework.batch.infrastructure.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reader del formato columnar de {@link UserColumnarFormat}.
+ *
+ * Al abrir lee solo el footer (índice de grupos y diccionario) y descarta los row groups cuyo
+ * rango de ids no se solapa con [minId, maxId]; esos grupos no se llegan a leer del disco.
+ * Cada grupo que sí se lee se decodifica entero, columna a columna, y se devuelve fila a fila.
+ * Sin límites (minId y maxId nulos) se devuelven todas las filas, también las de id nulo.
+ *
+ * Reinicio: read.count cuenta los usuarios devueltos; al reabrir, los grupos que pasan
+ * completos el filtro se saltan sumando sus filas, sin decodificarlos.
+ */
+public class ColumnarUserItemReader extends AbstractItemCountingItemStreamItemReader<User> {
+
+    private final Path path;
+    private final Long minId;
+    private final Long maxId;
+
+    private FileChannel channel;
+    private List<RowGroup> rowGroups;
+    private String[] domains;
+    private int nextGroup;
+
+    // Columnas del grupo en curso
+    private int rows;
+    private int row;
+    private long[] ids;
+    private boolean[] idNulls;
+    private String[] names;
+    private String[] emails;
+    private boolean[] active;
+
+    public ColumnarUserItemReader(String name, Path path, Long minId, Long maxId) {
+        this.path = path;
+        this.minId = minId;
+        this.maxId = maxId;
+        setName(name);
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size < UserColumnarFormat.HEADER_BYTES + UserColumnarFormat.TAIL_BYTES) {
+            throw new IOException("Fichero columnar incompleto: " + path);
+        }
+        ByteBuffer tail = readAt(size - UserColumnarFormat.TAIL_BYTES, UserColumnarFormat.TAIL_BYTES);
+        int footerLength = tail.getInt();
+        byte[] magic = new byte[UserColumnarFormat.MAGIC.length];
+        tail.get(magic);
+        if (!Arrays.equals(magic, UserColumnarFormat.MAGIC)) {
+            throw new IOException("Fichero columnar sin footer (¿no se cerró el writer?): " + path);
+        }
+        ByteBuffer footer = readAt(size - UserColumnarFormat.TAIL_BYTES - footerLength, footerLength);
+
+        int groupCount = UserColumnarFormat.readVarInt(footer);
+        rowGroups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            RowGroup group = UserColumnarFormat.readRowGroup(footer);
+            if (group.overlaps(minId, maxId)) {
+                rowGroups.add(group);
+            }
+        }
+        domains = new String[UserColumnarFormat.readVarInt(footer)];
+        for (int i = 0; i < domains.length; i++) {
+            domains[i] = UserColumnarFormat.readString(footer);
+        }
+        nextGroup = 0;
+        rows = 0;
+        row = 0;
+    }
+
+    @Override
+    protected User doRead() throws Exception {
+        while (true) {
+            while (row < rows) {
+                int i = row++;
+                if (matches(i)) {
+                    return new User(idNulls[i] ? null : ids[i], names[i], emails[i], active[i]);
+                }
+            }
+            if (nextGroup == rowGroups.size()) {
+                return null;
+            }
+            decode(rowGroups.get(nextGroup++));
+        }
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        int skipped = 0;
+        while (nextGroup < rowGroups.size()) {
+            RowGroup group = rowGroups.get(nextGroup);
+            if (!group.within(minId, maxId) || skipped + group.rows() > itemIndex) {
+                break;
+            }
+            skipped += group.rows();
+            nextGroup++;
+        }
+        for (; skipped < itemIndex; skipped++) {
+            doRead();
+        }
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        rowGroups = null;
+        rows = 0;
+    }
+
+    private boolean matches(int i) {
+        if (minId == null && maxId == null) {
+            return true;
+        }
+        return !idNulls[i]
+                && (minId == null || ids[i] >= minId)
+                && (maxId == null || ids[i] <= maxId);
+    }
+
+    // =================== DECODIFICACIÓN ===================
+
+    private void decode(RowGroup group) throws IOException {
+        ByteBuffer in = readAt(group.offset() + Integer.BYTES, group.length());
+        rows = UserColumnarFormat.readStats(in, group.offset(), group.length()).rows();
+        row = 0;
+        // Los dominios nuevos del grupo ya están en el diccionario del footer
+        int newDomains = UserColumnarFormat.readVarInt(in);
+        for (int i = 0; i < newDomains; i++) {
+            UserColumnarFormat.readString(in);
+        }
+
+        idNulls = group.nullIds() > 0 ? UserColumnarFormat.readBits(in, rows) : new boolean[rows];
+        ids = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if (!idNulls[i]) {
+                previous += UserColumnarFormat.readZigZag(in);
+                ids[i] = previous;
+            }
+        }
+        names = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            names[i] = UserColumnarFormat.readString(in);
+        }
+        emails = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            emails[i] = UserColumnarFormat.readString(in);
+        }
+        for (int i = 0; i < rows; i++) {
+            if (emails[i] != null) {
+                int domain = UserColumnarFormat.readVarInt(in);
+                if (domain > 0) {
+                    emails[i] = emails[i] + '@' + domains[domain - 1];
+                }
+            }
+        }
+        active = UserColumnarFormat.readBits(in, rows);
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fichero columnar truncado: " + path);
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,309 @@
+package com.spring.batch.columnar;
+
+import com.spring.batch.columnar.UserColumnarFormat.RowGroup;
+import com.spring.batch.columnar.UserColumnarFormat.Sink;
+import com.spring.batch.model.User;
+import com.spring.batch.writer.StagedItemWriter;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamSupport;
+import org.springframework.batch.infrastructure.item.ItemStreamWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer de usuarios en el formato columnar de {@link UserColumnarFormat}.
+ *
+ * Las filas se acumulan hasta rowGroupSize y se codifican columna a columna en un row group.
+ * Los grupos no dependen de los commits: en cada update() se escriben los grupos que ya están
+ * llenos y las filas confirmadas que sobran se añaden al fichero como un registro de filas
+ * abiertas (longitud en negativo para distinguirlo de un grupo), que solo se usa al reiniciar.
+ * Así los grupos tienen rowGroupSize filas aunque el chunk sea mucho más pequeño; solo el
+ * último, que escribe close() antes del footer, puede tener menos. Cada fila va como mucho una
+ * vez en un registro de filas abiertas, y ninguna si su grupo se cierra en el mismo update().
+ * El reader localiza los grupos por el índice del footer y no lee esos registros.
+ *
+ * Guarda en el ExecutionContext la posición tras lo último escrito en update(). Al reiniciar, el
+ * fichero se trunca a esa posición (lo que elimina el footer y lo escrito tras el último
+ * commit) y se recorre entero: los grupos reconstruyen el índice y el diccionario, y los
+ * registros de filas abiertas devuelven a memoria las filas confirmadas que aún no estaban en
+ * ningún grupo. Nunca se sobrescribe nada anterior a esa posición, así que un fallo entre el
+ * update() y el commit del ExecutionContext deja el fichero coherente con la posición anterior.
+ *
+ * Como UserFileItemWriter, es un StagedItemWriter: CompositeUserWriter solo le pasa el chunk
+ * (apply) cuando la BD lo ha aceptado.
+ *
+ * No se puede compartir entre steps simultáneos (workers de una partición): el grupo abierto y
+ * la posición guardada serían de todos, y el update() de un worker daría por confirmadas filas
+ * de otro que aún puede hacer rollback. stepTwo relee un único fichero, así que en lugar de un
+ * fichero por partición open() falla si el writer ya está abierto.
+ */
+public class ColumnarUserItemWriter extends ItemStreamSupport
+        implements ItemStreamWriter<User>, StagedItemWriter<User> {
+
+    private static final String POSITION_KEY = "position";
+
+    private final Path path;
+    private final int rowGroupSize;
+    private final List<User> pending = new ArrayList<>();
+    private final List<RowGroup> rowGroups = new ArrayList<>();
+    private final Map<String, Integer> domainIndex = new HashMap<>();
+    private final List<String> domains = new ArrayList<>();
+    private final Sink body = new Sink();
+    private final Sink frame = new Sink();
+
+    private FileChannel channel;
+    // Filas del principio de pending que ya están en un registro de filas abiertas
+    private int logged;
+
+    public ColumnarUserItemWriter(String name, Path path, int rowGroupSize) {
+        this.path = path;
+        this.rowGroupSize = Math.max(1, rowGroupSize);
+        setName(name);
+    }
+
+    @Override
+    public synchronized void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (channel != null) {
+            throw new IllegalStateException("El writer " + getName() + " ya está abierto por otro step: "
+                    + path + " no se puede compartir entre steps simultáneos (particiones)");
+        }
+        pending.clear();
+        logged = 0;
+        rowGroups.clear();
+        domainIndex.clear();
+        domains.clear();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long position = executionContext.getLong(getExecutionContextKey(POSITION_KEY), 0L);
+            if (position > 0) {
+                channel.truncate(position);
+                recover(position);
+            } else {
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(UserColumnarFormat.HEADER_BYTES);
+                header.put(UserColumnarFormat.MAGIC).put(UserColumnarFormat.VERSION).flip();
+                writeFully(header);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo abrir el fichero " + path, e);
+        }
+    }
+
+    @Override
+    public Object stage(Chunk<? extends User> chunk) {
+        return new ArrayList<User>(chunk.getItems());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void apply(Object staged) {
+        pending.addAll((List<User>) staged);
+    }
+
+    @Override
+    public synchronized void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            while (pending.size() >= rowGroupSize) {
+                writeRowGroup(rowGroupSize);
+            }
+            writeOpenRows();
+            executionContext.putLong(getExecutionContextKey(POSITION_KEY), channel.position());
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo escribir el fichero " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws ItemStreamException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            while (!pending.isEmpty()) {
+                writeRowGroup(Math.min(pending.size(), rowGroupSize));
+            }
+            writeFooter();
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo cerrar el fichero " + path, e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    // =================== CODIFICACIÓN ===================
+
+    // Escribe las primeras rows filas de pending como un row group
+    private void writeRowGroup(int rows) throws IOException {
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        int nullIds = 0;
+        boolean[] idNulls = new boolean[rows];
+        boolean[] active = new boolean[rows];
+        String[] locals = new String[rows];
+        int[] domainRefs = new int[rows];
+        int firstNewDomain = domains.size();
+
+        for (int i = 0; i < rows; i++) {
+            User user = pending.get(i);
+            Long id = user.getId();
+            if (id == null) {
+                idNulls[i] = true;
+                nullIds++;
+            } else {
+                minId = Math.min(minId, id);
+                maxId = Math.max(maxId, id);
+            }
+            active[i] = user.isActive();
+            String email = user.getEmail();
+            int at = email == null ? -1 : email.lastIndexOf('@');
+            if (at < 0) {
+                locals[i] = email;
+            } else {
+                locals[i] = email.substring(0, at);
+                domainRefs[i] = domainIndex.computeIfAbsent(email.substring(at + 1), domain -> {
+                    domains.add(domain);
+                    return domains.size() - 1;
+                }) + 1;
+            }
+        }
+
+        body.reset();
+        UserColumnarFormat.writeStats(body, rows, minId, maxId, nullIds);
+        body.writeVarLong(domains.size() - firstNewDomain);
+        for (int i = firstNewDomain; i < domains.size(); i++) {
+            body.writeString(domains.get(i));
+        }
+        if (nullIds > 0) {
+            body.writeBits(idNulls, rows);
+        }
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            Long id = pending.get(i).getId();
+            if (id != null) {
+                body.writeZigZag(id - previous);
+                previous = id;
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            body.writeString(pending.get(i).getName());
+        }
+        for (int i = 0; i < rows; i++) {
+            body.writeString(locals[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            if (pending.get(i).getEmail() != null) {
+                body.writeVarLong(domainRefs[i]);
+            }
+        }
+        body.writeBits(active, rows);
+
+        long offset = channel.position();
+        frame.reset();
+        frame.writeInt(body.length());
+        writeFully(frame.toByteBuffer());
+        writeFully(body.toByteBuffer());
+        rowGroups.add(new RowGroup(offset, body.length(), rows, minId, maxId, nullIds));
+        pending.subList(0, rows).clear();
+        logged = Math.max(0, logged - rows);
+    }
+
+    // Registro con las filas de pending que aún no están en el fichero
+    private void writeOpenRows() throws IOException {
+        if (logged == pending.size()) {
+            return;
+        }
+        body.reset();
+        UserColumnarFormat.writeOpenRows(body, pending, logged, pending.size());
+        frame.reset();
+        frame.writeInt(-body.length());
+        writeFully(frame.toByteBuffer());
+        writeFully(body.toByteBuffer());
+        logged = pending.size();
+    }
+
+    private void writeFooter() throws IOException {
+        body.reset();
+        body.writeVarLong(rowGroups.size());
+        for (RowGroup group : rowGroups) {
+            UserColumnarFormat.writeRowGroup(body, group);
+        }
+        body.writeVarLong(domains.size());
+        for (String domain : domains) {
+            body.writeString(domain);
+        }
+        body.writeInt(body.length());
+        body.writeBytes(UserColumnarFormat.MAGIC);
+        writeFully(body.toByteBuffer());
+    }
+
+    // Reinicio: relee los grupos confirmados para recuperar el índice y el diccionario, y los
+    // registros de filas abiertas para recuperar las filas que aún no están en un grupo
+    private void recover(long end) throws IOException {
+        ByteBuffer header = readAt(0, UserColumnarFormat.HEADER_BYTES);
+        byte[] magic = new byte[UserColumnarFormat.MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, UserColumnarFormat.MAGIC)) {
+            throw new IOException("El fichero " + path + " no tiene formato columnar");
+        }
+        long offset = UserColumnarFormat.HEADER_BYTES;
+        while (offset < end) {
+            int length = readAt(offset, Integer.BYTES).getInt();
+            if (length < 0) {
+                UserColumnarFormat.readOpenRows(readAt(offset + Integer.BYTES, -length), pending);
+                offset += Integer.BYTES - length;
+                continue;
+            }
+            ByteBuffer group = readAt(offset + Integer.BYTES, length);
+            RowGroup rowGroup = UserColumnarFormat.readStats(group, offset, length);
+            rowGroups.add(rowGroup);
+            // El grupo empieza por las filas abiertas registradas antes que él
+            pending.subList(0, Math.min(rowGroup.rows(), pending.size())).clear();
+            int newDomains = UserColumnarFormat.readVarInt(group);
+            for (int i = 0; i < newDomains; i++) {
+                String domain = UserColumnarFormat.readString(group);
+                domainIndex.put(domain, domains.size());
+                domains.add(domain);
+            }
+            offset += Integer.BYTES + length;
+        }
+        logged = pending.size();
+        channel.position(end);
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fichero columnar truncado: " + path);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.spring.batch.columnar;
+
+import com.spring.batch.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formato binario columnar de los usuarios procesados (ficheros .ucol).
+ *
+ * <pre>
+ * cabecera    "UCOL" + versión (1 byte)
+ * row groups  int con la longitud del cuerpo + cuerpo, uno detrás de otro
+ * footer      índice de row groups (offset, longitud, filas, id mínimo y máximo, ids nulos)
+ *             + diccionario completo de dominios de email
+ * cola        int con la longitud del footer + "UCOL"
+ * </pre>
+ *
+ * Cuerpo de cada row group, columna a columna:
+ * - filas, id mínimo, id máximo e ids nulos
+ * - dominios nuevos: los que aparecen por primera vez en el grupo, en orden de índice
+ * - id: bitmap de nulos (solo si hay alguno) y la diferencia con el id anterior en zigzag +
+ *   varint; con ids crecientes casi todas ocupan 1 byte
+ * - name: longitud + 1 (0 = null) y bytes UTF-8
+ * - email: la parte local como name y, para los emails no nulos, el índice del dominio en el
+ *   diccionario + 1 (0 = sin '@')
+ * - active: un bit por fila
+ *
+ * El diccionario es de todo el fichero y crece grupo a grupo; el footer lo repite entero para
+ * que el reader pueda saltar grupos sin leerlos.
+ *
+ * Mientras el writer está abierto, las filas confirmadas que aún no llenan un grupo se guardan
+ * tras el último grupo como registros de filas abiertas (int con la longitud + cuerpo): número
+ * de filas y, por fila, un byte de flags (bit 0 active, bit 1 id no nulo), el id en zigzag si
+ * lo hay, name y email. Solo sirven para reiniciar; close() los sustituye por el último grupo y
+ * el footer.
+ */
+public final class UserColumnarFormat {
+
+    static final byte[] MAGIC = {'U', 'C', 'O', 'L'};
+    static final byte VERSION = 1;
+    static final int HEADER_BYTES = MAGIC.length + 1;
+    static final int TAIL_BYTES = Integer.BYTES + MAGIC.length;
+
+    private UserColumnarFormat() {
+    }
+
+    /**
+     * Entrada del índice del footer: dónde está el grupo y qué rango de ids contiene.
+     * Si todos los ids son nulos, minId > maxId.
+     */
+    record RowGroup(long offset, int length, int rows, long minId, long maxId, int nullIds) {
+
+        boolean overlaps(Long lowerId, Long upperId) {
+            if (lowerId == null && upperId == null) {
+                return true;
+            }
+            return minId <= maxId
+                    && (lowerId == null || maxId >= lowerId)
+                    && (upperId == null || minId <= upperId);
+        }
+
+        // Todas las filas del grupo pasan el filtro: se pueden saltar contando solo las filas
+        boolean within(Long lowerId, Long upperId) {
+            if (lowerId == null && upperId == null) {
+                return true;
+            }
+            return nullIds == 0
+                    && (lowerId == null || minId >= lowerId)
+                    && (upperId == null || maxId <= upperId);
+        }
+    }
+
+    // =================== ESCRITURA ===================
+
+    /**
+     * Buffer de bytes ampliable y reutilizable (no thread-safe).
+     */
+    static final class Sink {
+
+        private byte[] bytes = new byte[8192];
+        private int length;
+
+        void reset() {
+            length = 0;
+        }
+
+        int length() {
+            return length;
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            bytes[length++] = (byte) value;
+        }
+
+        void writeBytes(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(Integer.BYTES);
+            bytes[length++] = (byte) (value >>> 24);
+            bytes[length++] = (byte) (value >>> 16);
+            bytes[length++] = (byte) (value >>> 8);
+            bytes[length++] = (byte) value;
+        }
+
+        // 7 bits por byte, el bit alto indica que sigue otro byte
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        // Zigzag: los valores pequeños, positivos o negativos, quedan en pocos bytes
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(encoded.length + 1L);
+            writeBytes(encoded);
+        }
+
+        void writeBits(boolean[] values, int count) {
+            ensureCapacity((count + 7) / 8);
+            for (int i = 0; i < count; i += 8) {
+                int packed = 0;
+                for (int bit = 0; bit < 8 && i + bit < count; bit++) {
+                    if (values[i + bit]) {
+                        packed |= 1 << bit;
+                    }
+                }
+                bytes[length++] = (byte) packed;
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+
+    // =================== LECTURA ===================
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static long readZigZag(ByteBuffer in) {
+        long value = readVarLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        return Math.toIntExact(readVarLong(in));
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        length--;
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    static boolean[] readBits(ByteBuffer in, int count) {
+        boolean[] values = new boolean[count];
+        for (int i = 0; i < count; i += 8) {
+            int packed = in.get();
+            for (int bit = 0; bit < 8 && i + bit < count; bit++) {
+                values[i + bit] = (packed & (1 << bit)) != 0;
+            }
+        }
+        return values;
+    }
+
+    // Entrada del índice en el footer y en la cabecera del cuerpo de cada grupo
+    static void writeRowGroup(Sink out, RowGroup group) {
+        out.writeVarLong(group.offset());
+        out.writeVarLong(group.length());
+        writeStats(out, group.rows(), group.minId(), group.maxId(), group.nullIds());
+    }
+
+    static RowGroup readRowGroup(ByteBuffer in) {
+        long offset = readVarLong(in);
+        int length = readVarInt(in);
+        return readStats(in, offset, length);
+    }
+
+    static void writeStats(Sink out, int rows, long minId, long maxId, int nullIds) {
+        out.writeVarLong(rows);
+        out.writeZigZag(minId);
+        out.writeZigZag(maxId);
+        out.writeVarLong(nullIds);
+    }
+
+    static RowGroup readStats(ByteBuffer in, long offset, int length) {
+        int rows = readVarInt(in);
+        long minId = readZigZag(in);
+        long maxId = readZigZag(in);
+        int nullIds = readVarInt(in);
+        return new RowGroup(offset, length, rows, minId, maxId, nullIds);
+    }
+
+    // Registro de filas abiertas: fila a fila, sin diccionario
+    static void writeOpenRows(Sink out, List<User> users, int from, int to) {
+        out.writeVarLong(to - from);
+        for (int i = from; i < to; i++) {
+            User user = users.get(i);
+            out.writeByte((user.isActive() ? 1 : 0) | (user.getId() != null ? 2 : 0));
+            if (user.getId() != null) {
+                out.writeZigZag(user.getId());
+            }
+            out.writeString(user.getName());
+            out.writeString(user.getEmail());
+        }
+    }
+
+    static void readOpenRows(ByteBuffer in, List<User> users) {
+        int rows = readVarInt(in);
+        for (int i = 0; i < rows; i++) {
+            byte flags = in.get();
+            Long id = (flags & 2) != 0 ? readZigZag(in) : null;
+            String name = readString(in);
+            String email = readString(in);
+            users.add(new User(id, name, email, (flags & 1) != 0));
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.spring.batch.config;
+
+import com.spring.batch.model.User;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.ChunkListener;
+import org.springframework.batch.core.listener.ItemReadListener;
+import org.springframework.batch.core.listener.ItemWriteListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.repeat.CompletionPolicy;
+import org.springframework.batch.infrastructure.repeat.RepeatContext;
+import org.springframework.batch.infrastructure.repeat.RepeatStatus;
+import org.springframework.batch.infrastructure.repeat.context.RepeatContextSupport;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CompletionPolicy que ajusta el tamaño del chunk en tiempo de ejecución según la duración
+ * medida de cada transacción de chunk (lectura + proceso + escritura + commit).
+ *
+ * - Si el chunk tarda menos que targetCommitMs, el siguiente crece (como mucho x2)
+ * - Si tarda más, el siguiente se reduce (como mucho a la mitad)
+ * - El nuevo tamaño se calcula sobre los items leídos en la transacción, no sobre el objetivo
+ * - Si la escritura falla o el chunk hace rollback (skip/retry), el tamaño se reduce a la mitad
+ *   una sola vez por chunk, y un chunk que ha fallado no lo vuelve a hacer crecer
+ * - Tras el rollback, el step fault-tolerant reprocesa los items del chunk en transacciones de
+ *   un item (scan) sin volver a leer: esas transacciones no leen nada, así que ni cuentan como
+ *   chunk, ni ajustan el tamaño, ni lo reducen otra vez si el item falla. Medidas contra el
+ *   objetivo, cada una duplicaría el tamaño y desharía la reducción en el mismo chunk
+ * - El tamaño siempre queda entre min y max
+ *
+ * Cada chunk fija su tamaño objetivo al empezar, por lo que es seguro con varios hilos.
+ * El tamaño actual se guarda en el ExecutionContext del step (y se retoma al reiniciar)
+ * y se publica como gauge batch.chunk.size y como resumen batch.chunk.size.chosen.
+ * Los tamaños mínimo/máximo elegidos y la duración media son de cada StepExecution (los workers
+ * de una partición comparten la política).
+ */
+public class AdaptiveChunkCompletionPolicy implements CompletionPolicy, ChunkListener<User, User>,
+        ItemReadListener<User>, ItemWriteListener<User>, StepExecutionListener {
+
+    private static final String SIZE_KEY = "adaptiveChunk.size";
+    private static final String MIN_KEY = "adaptiveChunk.minChosen";
+    private static final String MAX_KEY = "adaptiveChunk.maxChosen";
+    private static final String AVG_KEY = "adaptiveChunk.avgChunkMs";
+
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+    private final AtomicInteger size;
+    private final Map<Long, Stats> statsByStep = new ConcurrentHashMap<>();
+    private final Stats unscoped = new Stats();
+    // {inicio en nanos, tamaño usado, 1 si ya se ha reducido por un error de este chunk, items leídos}
+    private final ThreadLocal<long[]> chunkStart = new ThreadLocal<>();
+    private final DistributionSummary chosenSizes;
+
+    public AdaptiveChunkCompletionPolicy(String stepName, int initial, int min, int max,
+                                         long targetCommitMs, MeterRegistry meterRegistry) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.targetNanos = targetCommitMs * 1_000_000L;
+        this.size = new AtomicInteger(clamp(initial));
+        Gauge.builder("batch.chunk.size", size, AtomicInteger::get)
+                .description("Tamaño actual del chunk adaptativo")
+                .tag("step", stepName)
+                .register(meterRegistry);
+        this.chosenSizes = DistributionSummary.builder("batch.chunk.size.chosen")
+                .description("Tamaños de chunk elegidos por la política adaptativa")
+                .tag("step", stepName)
+                .register(meterRegistry);
+    }
+
+    // =================== COMPLETION POLICY ===================
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        int target = size.get();
+        Stats stats = stats();
+        chosenSizes.record(target);
+        stats.minChosen.accumulateAndGet(target, Math::min);
+        stats.maxChosen.accumulateAndGet(target, Math::max);
+        return new SizedContext(parent, target);
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context, RepeatStatus result) {
+        return result == null || !result.isContinuable() || isComplete(context);
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        return context.getStartedCount() >= ((SizedContext) context).target;
+    }
+
+    @Override
+    public void update(RepeatContext context) {
+        ((SizedContext) context).increment();
+    }
+
+    // =================== MEDICIÓN ===================
+
+    // El step adaptativo es un TaskletStep (builder por CompletionPolicy), que solo llama a las
+    // variantes con ChunkContext, deprecadas para borrar en Batch 6
+
+    @Override
+    @SuppressWarnings("removal")
+    public void beforeChunk(ChunkContext context) {
+        chunkStart.set(new long[]{System.nanoTime(), size.get(), 0, 0});
+    }
+
+    @Override
+    public void afterRead(User item) {
+        long[] start = chunkStart.get();
+        if (start != null) {
+            start[3]++;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("removal")
+    public void afterChunk(ChunkContext context) {
+        long[] start = chunkStart.get();
+        chunkStart.remove();
+        if (start == null || start[3] == 0) {
+            return; // scan tras un rollback, o fin de datos: no es un chunk leído
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start[0]);
+        Stats stats = stats();
+        stats.chunks.increment();
+        stats.totalNanos.add(elapsed);
+        if (start[2] == 1) {
+            return; // la escritura falló y se saltaron items: se mantiene la reducción
+        }
+
+        // Factor proporcional al objetivo, limitado a [0.5, 2] para no oscilar
+        double factor = Math.max(0.5, Math.min(2.0, (double) targetNanos / elapsed));
+        size.set(clamp((int) Math.round(start[3] * factor)));
+    }
+
+    @Override
+    @SuppressWarnings("removal")
+    public void afterChunkError(ChunkContext context) {
+        long[] start = chunkStart.get();
+        chunkStart.remove();
+        if (start == null || (start[2] == 0 && start[3] > 0)) {
+            backOff();
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, Chunk<? extends User> items) {
+        // Tras un error de escritura el chunk suele acabar en rollback (afterChunkError): se
+        // reduce aquí y se marca el chunk para no reducir dos veces
+        long[] start = chunkStart.get();
+        if (start == null) {
+            backOff();
+        } else if (start[2] == 0 && start[3] > 0) {
+            start[2] = 1;
+            backOff();
+        }
+    }
+
+    // =================== STEP ===================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        ExecutionContext context = stepExecution.getExecutionContext();
+        if (context.containsKey(SIZE_KEY)) {
+            size.set(clamp(context.getInt(SIZE_KEY))); // reinicio: seguimos con el último tamaño
+        }
+        statsByStep.put(stepExecution.getId(), new Stats());
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        Stats stats = statsByStep.remove(stepExecution.getId());
+        if (stats == null) {
+            stats = new Stats();
+        }
+        ExecutionContext context = stepExecution.getExecutionContext();
+        long count = stats.chunks.sum();
+        int minChosen = stats.minChosen.get();
+        context.putInt(SIZE_KEY, size.get());
+        context.putInt(MIN_KEY, minChosen == Integer.MAX_VALUE ? size.get() : minChosen);
+        context.putInt(MAX_KEY, Math.max(stats.maxChosen.get(), size.get()));
+        context.putLong(AVG_KEY, count == 0 ? 0 : stats.totalNanos.sum() / count / 1_000_000L);
+        return stepExecution.getExitStatus();
+    }
+
+    private void backOff() {
+        size.updateAndGet(current -> clamp(current / 2));
+    }
+
+    private int clamp(int value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // Estadísticas del step que se ejecuta en este hilo
+    private Stats stats() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return unscoped;
+        }
+        return statsByStep.computeIfAbsent(context.getStepExecution().getId(), id -> new Stats());
+    }
+
+    // Tamaños elegidos y duración de los chunks de un step
+    private static class Stats {
+        final AtomicInteger minChosen = new AtomicInteger(Integer.MAX_VALUE);
+        final AtomicInteger maxChosen = new AtomicInteger();
+        final LongAdder chunks = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+    }
+
+    // Contexto de repetición con el tamaño fijado al iniciar el chunk
+    private static class SizedContext extends RepeatContextSupport {
+
+        private final int target;
+
+        SizedContext(RepeatContext parent, int target) {
+            super(parent);
+            this.target = target;
+        }
+    }
+}
@@ -1,25 +1,74 @@
 package com.spring.batch.config;
 
+import com.spring.batch.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.listener.ChunkListener;
+import org.springframework.batch.core.listener.ItemProcessListener;
+import org.springframework.batch.core.listener.ItemReadListener;
+import org.springframework.batch.core.listener.ItemWriteListener;
 import org.springframework.batch.core.listener.JobExecutionListener;
 import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
 import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.core.retry.RetryListener;
+import org.springframework.core.retry.RetryPolicy;
+import org.springframework.core.retry.Retryable;
 import org.springframework.stereotype.Component;
 
-import java.time.Instant;
-import java.util.HashMap;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Listener avanzado que extiende JobExecutionListener y StepExecutionListener
  * para logging detallado y métricas personalizadas.
+ *
+ * Es seguro con steps multihilo y steps en paralelo:
+ * - los errores se cuentan en LongAdder por (ejecución del job, step, tipo de excepción), sin
+ *   locks; el resumen de cada job se descarta al terminar
+ * - la duración del step se calcula a partir del startTime de su StepExecution
+ * - las fases de cada chunk se miden en variables del hilo que ejecuta el chunk; el chunk empieza
+ *   con la primera lectura (ChunkOrientedStep avisa de beforeChunk cuando ya ha leído)
+ *
+ * Métricas Micrometer (visibles en el endpoint actuator metrics), con tag step:
+ * - batch.chunk.read / batch.chunk.process / batch.chunk.write: tiempo de cada fase
+ *   por chunk, con histograma de percentiles
+ * - batch.step.errors: errores por step y tipo de excepción (tag exception)
+ * - batch.step.retries: reintentos por step
+ *
+ * Los reintentos de cada ejecución de step se guardan además en su ExecutionContext
+ * (monitoring.retries), porque StepExecution no tiene un contador de reintentos.
  */
 @Component
-public class AdvancedMonitoringListener implements JobExecutionListener, StepExecutionListener {
+public class AdvancedMonitoringListener implements JobExecutionListener, StepExecutionListener,
+        ChunkListener<User, User>, ItemReadListener<User>, ItemProcessListener<User, User>, ItemWriteListener<User>,
+        RetryListener {
 
-    private Map<String, Integer> errorCountByType = new HashMap<>();
-    private long stepStartTime;
+    public static final String RETRIES_KEY = "monitoring.retries";
+
+    private static final String UNKNOWN_STEP = "unknown";
+    private static final long UNKNOWN_JOB = -1L;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<ErrorKey, LongAdder> errorCountByType = new ConcurrentHashMap<>();
+    private final Map<String, ChunkTimers> timersByStep = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> retriesByStepExecution = new ConcurrentHashMap<>();
+    private final ThreadLocal<ChunkPhases> phases = ThreadLocal.withInitial(ChunkPhases::new);
+
+    public AdvancedMonitoringListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     // =================== JOB ===================
     @Override
@@ -31,33 +80,185 @@ public class AdvancedMonitoringListener implements JobExecutionListener, StepExe
     public void afterJob(JobExecution jobExecution) {
         System.out.println("[Job] Finalizado Job: " + jobExecution.getJobInstance().getJobName()
                 + ", Estado: " + jobExecution.getStatus()
-                + ", Total errores por tipo: " + errorCountByType);
-        errorCountByType.clear();
+                + ", Total errores por tipo: " + errorsByType(jobExecution.getId(), null));
+        errorCountByType.keySet().removeIf(key -> key.jobExecution() == jobExecution.getId());
     }
 
     // =================== STEP ===================
     @Override
     public void beforeStep(StepExecution stepExecution) {
-        stepStartTime = Instant.now().toEpochMilli();
         System.out.println("[Step] Iniciando Step: " + stepExecution.getStepName());
+        phases.remove();
     }
 
     @Override
     public ExitStatus afterStep(StepExecution stepExecution) {
-        long duration = Instant.now().toEpochMilli() - stepStartTime;
+        LongAdder retries = retriesByStepExecution.remove(stepExecution.getId());
+        stepExecution.getExecutionContext().putLong(RETRIES_KEY, retries == null ? 0 : retries.sum());
+        LocalDateTime startTime = stepExecution.getStartTime();
+        long duration = startTime == null ? 0 : Duration.between(startTime, LocalDateTime.now()).toMillis();
         System.out.println("[Step] Step finalizado: " + stepExecution.getStepName()
                 + ", Estado: " + stepExecution.getStatus()
                 + ", Lecturas: " + stepExecution.getReadCount()
                 + ", Escritos: " + stepExecution.getWriteCount()
                 + ", Duracion: " + duration + " ms"
-                + ", Errores: " + errorCountByType);
+                + ", Errores: " + errorsByType(stepExecution.getJobExecutionId(), stepExecution.getStepName()));
+        phases.remove();
         return stepExecution.getExitStatus();
     }
 
-    // Metodo para registrar errores por tipo
+    // =================== CHUNK ===================
+    // ChunkOrientedStep (Batch 6) llama a beforeChunk(Chunk) con el chunk ya leído, así que el
+    // chunk empieza en la primera lectura. El step clásico (modo adaptativo) solo avisa con el
+    // ChunkContext, deprecado para borrar en Batch 6, antes de leer
+    @Override
+    @SuppressWarnings("removal")
+    public void beforeChunk(ChunkContext context) {
+        phases.get().start();
+    }
+
+    @Override
+    public void onChunkError(Exception exception, Chunk<User> chunk) {
+        phases.get().chunkStart = 0; // el siguiente chunk empieza de cero
+    }
+
+    @Override
+    public void beforeRead() {
+        ChunkPhases current = phases.get();
+        long now = System.nanoTime();
+        if (current.chunkStart == 0) {
+            current.start(now);
+        }
+        current.itemStart = now;
+    }
+
+    @Override
+    public void afterRead(User item) {
+        ChunkPhases current = phases.get();
+        current.readNanos += System.nanoTime() - current.itemStart;
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+        registerError(ex);
+    }
+
+    @Override
+    public void onProcessError(User item, Exception e) {
+        registerError(e);
+    }
+
+    @Override
+    public void beforeWrite(Chunk<? extends User> items) {
+        ChunkPhases current = phases.get();
+        long now = System.nanoTime();
+        if (current.chunkStart != 0) {
+            // Lo que no es lectura entre el inicio del chunk y la escritura es procesamiento
+            // (incluye el procesamiento concurrente en el taskExecutor)
+            ChunkTimers timers = timers();
+            timers.read.record(current.readNanos, TimeUnit.NANOSECONDS);
+            timers.process.record(Math.max(0, now - current.chunkStart - current.readNanos), TimeUnit.NANOSECONDS);
+            current.chunkStart = 0; // el scan de un chunk fallido vuelve a llamar a beforeWrite item a item
+        }
+        current.writeStart = now;
+    }
+
+    @Override
+    public void afterWrite(Chunk<? extends User> items) {
+        timers().write.record(System.nanoTime() - phases.get().writeStart, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onWriteError(Exception exception, Chunk<? extends User> items) {
+        registerError(exception);
+    }
+
+    // =================== RETRY ===================
+    @Override
+    public void beforeRetry(RetryPolicy retryPolicy, Retryable<?> retryable) {
+        StepContext context = StepSynchronizationManager.getContext();
+        String step = context != null ? context.getStepName() : UNKNOWN_STEP;
+        if (context != null) {
+            retriesByStepExecution.computeIfAbsent(context.getStepExecution().getId(), id -> new LongAdder()).increment();
+        }
+        meterRegistry.counter("batch.step.retries", "step", step).increment();
+    }
+
+    // Metodo para registrar errores por tipo, en el step que se está ejecutando en este hilo
     public void registerError(Exception ex) {
-        String key = ex.getClass().getSimpleName();
-        errorCountByType.put(key, errorCountByType.getOrDefault(key, 0) + 1);
+        registerError(currentStepName(), ex);
     }
-}
 
+    public void registerError(String stepName, Exception ex) {
+        String type = ex.getClass().getSimpleName();
+        errorCountByType.computeIfAbsent(new ErrorKey(currentJobExecutionId(), stepName, type),
+                key -> new LongAdder()).increment();
+        // El contador de Micrometer es acumulado; el resumen por job se descarta en afterJob
+        Counter.builder("batch.step.errors")
+                .description("Errores por step y tipo de excepción")
+                .tag("step", stepName)
+                .tag("exception", type)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Errores de una ejecución del job agregados por tipo; stepName null suma todos los steps
+    private Map<String, Long> errorsByType(long jobExecutionId, String stepName) {
+        Map<String, Long> result = new TreeMap<>();
+        errorCountByType.forEach((key, counter) -> {
+            if (key.jobExecution() == jobExecutionId && (stepName == null || stepName.equals(key.step()))) {
+                result.merge(key.type(), counter.sum(), Long::sum);
+            }
+        });
+        return result;
+    }
+
+    private ChunkTimers timers() {
+        return timersByStep.computeIfAbsent(currentStepName(), step -> new ChunkTimers(
+                timer("batch.chunk.read", "Tiempo de lectura de un chunk", step),
+                timer("batch.chunk.process", "Tiempo de procesamiento de un chunk", step),
+                timer("batch.chunk.write", "Tiempo de escritura de un chunk", step)));
+    }
+
+    private Timer timer(String name, String description, String step) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("step", step)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // El step registra su contexto en el hilo que ejecuta el chunk; fuera de él no hay step conocido
+    private static String currentStepName() {
+        StepContext context = StepSynchronizationManager.getContext();
+        return context != null ? context.getStepName() : UNKNOWN_STEP;
+    }
+
+    private static long currentJobExecutionId() {
+        StepContext context = StepSynchronizationManager.getContext();
+        return context != null ? context.getStepExecution().getJobExecutionId() : UNKNOWN_JOB;
+    }
+
+    private record ErrorKey(long jobExecution, String step, String type) {
+    }
+
+    private record ChunkTimers(Timer read, Timer process, Timer write) {
+    }
+
+    // Marcas de tiempo del chunk en curso en este hilo
+    private static final class ChunkPhases {
+        long chunkStart;
+        long readNanos;
+        long itemStart;
+        long writeStart;
+
+        void start() {
+            start(System.nanoTime());
+        }
+
+        void start(long now) {
+            chunkStart = now;
+            readNanos = 0;
+        }
+    }
+}
@@ -1,7 +1,18 @@
 package com.spring.batch.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JdbcJobRepositoryFactoryBean;
+import org.springframework.batch.core.repository.support.ResourcelessJobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
 
 /**
  * Configuración base de Spring Batch 6.x
@@ -18,8 +29,46 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @EnableBatchProcessing
 public class BatchConfig {
-    // Por ahora no se necesitan más beans, funciona con la configuración automática de Spring Boot
-}
 
+    /**
+     * Dónde se guardan los metadatos de los jobs (batch.repository.mode):
+     * - RESOURCELESS: en memoria, sin SQL; solo para ejecuciones puntuales que no se reinician
+     * - JDBC: tablas BATCH_* en H2, una escritura por commit de chunk
+     * - WRITE_BEHIND: tablas BATCH_*, pero las actualizaciones de cada step se agrupan
+     */
+    public enum RepositoryMode { RESOURCELESS, JDBC, WRITE_BEHIND }
+
+    /**
+     * JobRepository según batch.repository.mode. Al declararlo aquí, @EnableBatchProcessing no
+     * registra el suyo. Siempre va envuelto en {@link WriteBehindJobRepository} para contar las
+     * escrituras de metadatos; solo en WRITE_BEHIND se agrupan.
+     */
+    @Bean
+    public JobRepository jobRepository(DataSource dataSource,
+                                       PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${batch.repository.mode:RESOURCELESS}") RepositoryMode mode,
+                                       @Value("${batch.repository.flush-every-chunks:20}") int flushEveryChunks,
+                                       @Value("${batch.repository.flush-interval-ms:1000}") long flushIntervalMs)
+            throws Exception {
+        if (mode == RepositoryMode.RESOURCELESS) {
+            return new WriteBehindJobRepository(new ResourcelessJobRepository(), 1, 0, meterRegistry);
+        }
 
+        // Esquema de Spring Batch; si las tablas ya existen se ignoran los errores
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(
+                new ClassPathResource("org/springframework/batch/core/schema-h2.sql"));
+        schema.setContinueOnError(true);
+        schema.execute(dataSource);
 
+        JdbcJobRepositoryFactoryBean factory = new JdbcJobRepositoryFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setTransactionManager(transactionManager);
+        factory.afterPropertiesSet();
+        JobRepository jdbcRepository = factory.getObject();
+
+        return mode == RepositoryMode.WRITE_BEHIND
+                ? new WriteBehindJobRepository(jdbcRepository, flushEveryChunks, flushIntervalMs, meterRegistry)
+                : new WriteBehindJobRepository(jdbcRepository, 1, 0, meterRegistry);
+    }
+}
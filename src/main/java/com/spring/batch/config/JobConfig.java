@@ -1,28 +1,54 @@
 package com.spring.batch.config;
 
+import com.spring.batch.flow.DagFlowBuilder;
 import com.spring.batch.model.User;
-import com.spring.batch.processor.ActiveUserFilterProcessor;
-import com.spring.batch.processor.UserTransformProcessor;
-import com.spring.batch.processor.UserValidationProcessor;
+import com.spring.batch.pipeline.StagedPipelineTasklet;
+import com.spring.batch.processor.InvalidUserException;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.spring.batch.processor.UserProcessingPipeline;
+import com.spring.batch.partition.CsvByteRangePartitioner;
+import com.spring.batch.partition.UserIdRangePartitioner;
+import com.spring.batch.reader.CompositeUserReader;
+import com.spring.batch.reader.MappedCsvUserReader;
+import com.spring.batch.reader.UserHighWaterMarks;
+import com.spring.batch.writer.BisectingItemWriter;
+import com.spring.batch.writer.ChunkProcessingUserWriter;
+import com.spring.batch.writer.CompositeUserWriter;
+import com.spring.batch.writer.DeadLetterUserWriter;
+import com.spring.batch.writer.UserUpsertItemWriter;
 import org.springframework.batch.core.*;
 import org.springframework.batch.core.job.Job;
 import org.springframework.batch.core.job.builder.FlowBuilder;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.listener.SkipListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
 import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.Step;
+import org.springframework.batch.core.step.builder.FaultTolerantStepBuilder;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.infrastructure.item.ItemProcessor;
 import org.springframework.batch.infrastructure.item.ItemReader;
+import org.springframework.batch.infrastructure.item.ItemStreamReader;
 import org.springframework.batch.infrastructure.item.ItemWriter;
 import org.springframework.batch.infrastructure.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.infrastructure.item.database.JdbcPagingItemReader;
 import org.springframework.batch.infrastructure.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.retry.RetryPolicy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
 /**
  * Configuración avanzada de Spring Batch 6 para un Job completo con:
  * - Steps condicionales
@@ -35,109 +61,496 @@ import javax.sql.DataSource;
 public class JobConfig {
 
     private final JobRepository jobRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private final AdvancedMonitoringListener monitoringListener;
+    private final UserHighWaterMarks highWaterMarks;
+    private final DeadLetterUserWriter deadLetterWriter;
 
-    public JobConfig(JobRepository jobRepository) {
+    // Tamaño de chunk fijo, o inicial si el modo adaptativo está activo
+    private final int chunkSize;
+    private final boolean adaptiveChunks;
+    private final int adaptiveMin;
+    private final int adaptiveMax;
+    private final long targetCommitMs;
+
+    public JobConfig(JobRepository jobRepository,
+                     PlatformTransactionManager transactionManager,
+                     MeterRegistry meterRegistry,
+                     AdvancedMonitoringListener monitoringListener,
+                     UserHighWaterMarks highWaterMarks,
+                     DeadLetterUserWriter deadLetterWriter,
+                     @Value("${batch.chunk.size:5}") int chunkSize,
+                     @Value("${batch.chunk.adaptive.enabled:false}") boolean adaptiveChunks,
+                     @Value("${batch.chunk.adaptive.min:5}") int adaptiveMin,
+                     @Value("${batch.chunk.adaptive.max:1000}") int adaptiveMax,
+                     @Value("${batch.chunk.adaptive.target-commit-ms:200}") long targetCommitMs) {
         this.jobRepository = jobRepository;
+        this.transactionManager = transactionManager;
+        this.meterRegistry = meterRegistry;
+        this.monitoringListener = monitoringListener;
+        this.highWaterMarks = highWaterMarks;
+        this.deadLetterWriter = deadLetterWriter;
+        this.chunkSize = chunkSize;
+        this.adaptiveChunks = adaptiveChunks;
+        this.adaptiveMin = adaptiveMin;
+        this.adaptiveMax = adaptiveMax;
+        this.targetCommitMs = targetCommitMs;
     }
 
     // ======================= JOB PRINCIPAL =======================
 
+    // Los writers de BD son también listeners del job: en modo STAGING preparan la tabla staging
+    // al empezar el job y la vuelcan cuando termina con éxito (ver UserUpsertItemWriter)
     @Bean
-    public Job advancedJob(Step stepOne, Step stepTwo, Step stepThree) {
-
-        // Flujo paralelo
-        Flow parallelFlow = new FlowBuilder<Flow>("parallelFlow")
-                .start(stepTwo)
-                .next(stepThree)
-                .build();
+    public Job advancedJob(Step stepOne, Step stepTwo, Step stepThree, TaskExecutor flowTaskExecutor,
+                           CompositeUserWriter writer,
+                           @Qualifier("csvUpsertUserWriter") UserUpsertItemWriter stepTwoWriter,
+                           @Qualifier("dbSourceUpsertUserWriter") UserUpsertItemWriter stepThreeWriter) {
 
         // Job con Step condicional y flujo paralelo
         return new JobBuilder("advancedJob", jobRepository)
+                .listener(monitoringListener)
+                .listener(highWaterMarks)
+                .listener(writer)
+                .listener(stepTwoWriter)
+                .listener(stepThreeWriter)
                 .start(stepOne)
                 .on("FAILED").fail()       // Si falla stepOne, Job termina
-                .on("*").to(parallelFlow)  // Si completa, se ejecuta flujo paralelo
+                .on("*").to(parallelFlow(stepTwo, stepThree, flowTaskExecutor))  // Si completa, se ejecuta flujo paralelo
+                .end()
+                .build();
+    }
+
+    /**
+     * Variante de advancedJob en la que stepOne se reparte en particiones:
+     * primero el CSV por rangos de bytes y después la tabla users por rangos de id.
+     * Se selecciona con spring.batch.job.name=partitionedJob.
+     */
+    @Bean
+    public Job partitionedJob(Step csvStepManager, Step stepOneManager, Step stepTwo, Step stepThree,
+                              TaskExecutor flowTaskExecutor,
+                              CompositeUserWriter writer,
+                              @Qualifier("csvUpsertUserWriter") UserUpsertItemWriter stepTwoWriter,
+                              @Qualifier("dbSourceUpsertUserWriter") UserUpsertItemWriter stepThreeWriter) {
+        return new JobBuilder("partitionedJob", jobRepository)
+                .listener(monitoringListener)
+                .listener(highWaterMarks)
+                .listener(writer)
+                .listener(stepTwoWriter)
+                .listener(stepThreeWriter)
+                .start(csvStepManager)
+                .on("FAILED").fail()
+                .from(csvStepManager).on("*").to(stepOneManager)
+                .from(stepOneManager).on("FAILED").fail()
+                .from(stepOneManager)
+                .on("*").to(parallelFlow(stepTwo, stepThree, flowTaskExecutor))
                 .end()
                 .build();
     }
 
+    /**
+     * Variante de advancedJob declarada como grafo de dependencias (spring.batch.job.name=dagJob):
+     * cada step se lanza en cuanto terminan los steps de los que depende, con un máximo de
+     * batch.flow.max-concurrency steps a la vez.
+     */
+    @Bean
+    public Job dagJob(Step stepOne, Step stepTwo, Step stepThree, TaskExecutor flowTaskExecutor,
+                      @Value("${batch.flow.max-concurrency:4}") int maxConcurrency,
+                      CompositeUserWriter writer,
+                      @Qualifier("csvUpsertUserWriter") UserUpsertItemWriter stepTwoWriter,
+                      @Qualifier("dbSourceUpsertUserWriter") UserUpsertItemWriter stepThreeWriter) {
+        Flow dag = new DagFlowBuilder("dagFlow", flowTaskExecutor, maxConcurrency)
+                .step(stepOne)
+                .step(stepTwo, "stepOne")
+                .step(stepThree, "stepOne")
+                .build();
+        return new JobBuilder("dagJob", jobRepository)
+                .listener(monitoringListener)
+                .listener(highWaterMarks)
+                .listener(writer)
+                .listener(stepTwoWriter)
+                .listener(stepThreeWriter)
+                .start(dag)
+                .end()
+                .build();
+    }
+
+    // stepTwo y stepThree no dependen entre sí: cada uno va en su propio flow y el split los lanza a la vez
+    private Flow parallelFlow(Step stepTwo, Step stepThree, TaskExecutor flowTaskExecutor) {
+        Flow stepTwoFlow = new FlowBuilder<Flow>("stepTwoFlow").start(stepTwo).build();
+        Flow stepThreeFlow = new FlowBuilder<Flow>("stepThreeFlow").start(stepThree).build();
+        return new FlowBuilder<Flow>("parallelFlow")
+                .split(flowTaskExecutor)
+                .add(stepTwoFlow, stepThreeFlow)
+                .build();
+    }
+
     // ======================= STEP ONE (ETL) =======================
 
     @Bean
-    public Step stepOne(ItemReader<User> reader,
-                        UserValidationProcessor validator,
-                        UserTransformProcessor transformer,
-                        ActiveUserFilterProcessor filter,
-                        ItemWriter<User> writer,
+    public Step stepOne(CompositeUserReader reader,
+                        UserProcessingPipeline pipeline,
+                        CompositeUserWriter writer,
                         AsyncTaskExecutor taskExecutor,
                         LoggingListeners loggingListeners,
-                        SkipPolicy customSkipPolicy) {
+                        SkipPolicy customSkipPolicy,
+                        @Value("${batch.pipeline.enabled:false}") boolean stagedPipeline,
+                        @Value("${batch.pipeline.processor-threads:4}") int processorThreads,
+                        @Value("${batch.pipeline.queue-size:8}") int queueSize) {
+
+        if (stagedPipeline) {
+            return stagedEtlStep("stepOne", reader, pipeline, writer, customSkipPolicy, processorThreads, queueSize);
+        }
+        if (adaptiveChunks) {
+            return adaptiveEtlStep("stepOne", reader, pipeline, writer, taskExecutor, loggingListeners, customSkipPolicy);
+        }
 
         return new StepBuilder("stepOne", jobRepository)
-                .<User, User>chunk(5)
+                .<User, User>chunk(chunkSize)
                 .reader(reader)
-                .processor(item -> {
-                    User u = validator.process(item);
-                    u = transformer.process(u);
-                    return filter.process(u);
-                })
-                .writer(writer)
+                .processor(processorFor(pipeline))
+                .writer(writerFor(pipeline, writer, customSkipPolicy))
                 .taskExecutor(taskExecutor)
+                .transactionManager(transactionManager)
                 .faultTolerant()
                 .skipPolicy(customSkipPolicy)
-                .retry(IllegalArgumentException.class) // tipo de excepción a reintentar
-                .retryLimit(3)                          // máximo de reintentos
+                .retryPolicy(retryPolicy())
+                .retryListener(monitoringListener)
+                .skipListener(deadLetterWriter)
+                .listener(deadLetterWriter)
                 .listener(loggingListeners)
+                .listener(pipeline)
+                .listener(monitoringListener)
                 .build();
     }
 
-    // ======================= STEP DOS Y TRES (PARALELO) =======================
+    /**
+     * Variante de los steps ETL con tamaño de chunk adaptativo (batch.chunk.adaptive.enabled).
+     *
+     * El ChunkOrientedStep de Batch 6 solo admite un tamaño de chunk fijo, así que este modo
+     * usa el builder clásico basado en CompletionPolicy, con la misma configuración de
+     * skip, retry y listeners que la versión de tamaño fijo. listener(Object) de ese builder no
+     * registra los StepExecutionListener sin anotaciones, así que se pasan también con su tipo.
+     */
+    @SuppressWarnings("removal")
+    private Step adaptiveEtlStep(String name,
+                                 ItemReader<User> reader,
+                                 UserProcessingPipeline pipeline,
+                                 ItemWriter<User> writer,
+                                 AsyncTaskExecutor taskExecutor,
+                                 LoggingListeners loggingListeners,
+                                 SkipPolicy customSkipPolicy) {
+        AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(
+                name, chunkSize, adaptiveMin, adaptiveMax, targetCommitMs, meterRegistry);
 
-    @Bean
-    public Step stepTwo(ItemReader<User> reader, ItemWriter<User> writer) {
-        return new StepBuilder("stepTwo", jobRepository)
-                .<User, User>chunk(5)
+        FaultTolerantStepBuilder<User, User> builder = new StepBuilder(name, jobRepository)
+                .<User, User>chunk(policy, transactionManager)
                 .reader(reader)
-                .writer(writer)
+                .processor(processorFor(pipeline))
+                .writer(writerFor(pipeline, writer, customSkipPolicy))
+                .faultTolerant()
+                .skipPolicy(customSkipPolicy)
+                .retry(IllegalArgumentException.class)
+                .noRetry(InvalidUserException.class)
+                .retryLimit(3)
+                .listener((SkipListener<User, User>) deadLetterWriter)
+                .listener((Object) deadLetterWriter)
+                .listener((Object) loggingListeners)
+                .listener((Object) pipeline)
+                .listener((Object) monitoringListener)
+                .listener((Object) policy);
+        for (StepExecutionListener listener : List.of(deadLetterWriter, pipeline, monitoringListener, policy)) {
+            builder.listener(listener);
+        }
+        if (taskExecutor != null) {
+            builder.taskExecutor(taskExecutor);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Variante de stepOne en pipeline por etapas (batch.pipeline.enabled): un hilo lector,
+     * processorThreads hilos de proceso y el hilo del step escribiendo lotes de chunkSize
+     * en orden, conectados por colas de queueSize lotes. Ver {@link StagedPipelineTasklet}.
+     *
+     * Los listeners de item (LoggingListeners) no aplican: el step es un tasklet.
+     */
+    private Step stagedEtlStep(String name,
+                               ItemStreamReader<User> reader,
+                               UserProcessingPipeline pipeline,
+                               CompositeUserWriter writer,
+                               SkipPolicy customSkipPolicy,
+                               int processorThreads,
+                               int queueSize) {
+        StagedPipelineTasklet<User, User> tasklet = new StagedPipelineTasklet<>(name, reader, pipeline,
+                writer, customSkipPolicy, deadLetterWriter,
+                chunkSize, processorThreads, queueSize, meterRegistry);
+        return new StepBuilder(name, jobRepository)
+                .tasklet(tasklet, transactionManager)
+                .stream(writer)
+                .listener((Object) tasklet)
+                .listener((Object) writer)
+                .listener((Object) pipeline)
+                .listener((Object) deadLetterWriter)
+                .listener((Object) monitoringListener)
+                .build();
+    }
+
+    // Modo item a item: el pipeline es el ItemProcessor del step.
+    // Modo chunk: el step no tiene processor y el pipeline se aplica al chunk completo en el writer.
+    private ItemProcessor<User, User> processorFor(UserProcessingPipeline pipeline) {
+        return pipeline.isChunkMode() ? null : pipeline;
+    }
+
+    // Los errores de datos al escribir los aísla CompositeUserWriter partiendo el chunk, y en modo
+    // chunk los de validación los aparta ChunkProcessingUserWriter, sin scan item a item
+    private ItemWriter<User> writerFor(UserProcessingPipeline pipeline, ItemWriter<User> writer,
+                                       SkipPolicy skipPolicy) {
+        return pipeline.isChunkMode()
+                ? new ChunkProcessingUserWriter(pipeline, writer, skipPolicy, deadLetterWriter)
+                : writer;
+    }
+
+    /**
+     * Reintentos de stepOne: IllegalArgumentException hasta 3 veces, salvo los errores de validación
+     * (InvalidUserException), que son deterministas y se saltan al primer fallo.
+     */
+    private RetryPolicy retryPolicy() {
+        return RetryPolicy.builder()
+                .includes(IllegalArgumentException.class)
+                .excludes(InvalidUserException.class)
+                .maxRetries(3)
+                .delay(Duration.ZERO)
+                .build();
+    }
+
+    // ======================= STEP ONE PARTICIONADO =======================
+
+    /**
+     * Step manager: el partitioner reparte la tabla users en gridSize rangos de id y
+     * lanza un stepOneWorker por rango en el taskExecutor. Cada partición guarda su propio
+     * StepExecution, así que al reiniciar solo se repiten las particiones fallidas.
+     */
+    @Bean
+    public Step stepOneManager(UserIdRangePartitioner userIdRangePartitioner,
+                               Step stepOneWorker,
+                               AsyncTaskExecutor taskExecutor,
+                               @Value("${batch.partition.grid-size:4}") int gridSize) {
+        return new StepBuilder("stepOneManager", jobRepository)
+                .partitioner("stepOneWorker", userIdRangePartitioner)
+                .step(stepOneWorker)
+                .gridSize(gridSize)
+                .taskExecutor(taskExecutor)
+                .build();
+    }
+
+    @Bean
+    public Step stepOneWorker(JdbcPagingItemReader<User> jdbcPartitionUserReader,
+                              UserProcessingPipeline pipeline,
+                              CompositeUserWriter writer,
+                              LoggingListeners loggingListeners,
+                              SkipPolicy customSkipPolicy) {
+
+        if (adaptiveChunks) {
+            return adaptiveEtlStep("stepOneWorker", jdbcPartitionUserReader, pipeline, writer, null,
+                    loggingListeners, customSkipPolicy);
+        }
+
+        return new StepBuilder("stepOneWorker", jobRepository)
+                .<User, User>chunk(chunkSize)
+                .reader(jdbcPartitionUserReader)
+                .processor(processorFor(pipeline))
+                .writer(writerFor(pipeline, writer, customSkipPolicy))
+                .transactionManager(transactionManager)
+                .faultTolerant()
+                .skipPolicy(customSkipPolicy)
+                .retryPolicy(retryPolicy())
+                .retryListener(monitoringListener)
+                .skipListener(deadLetterWriter)
+                .listener(deadLetterWriter)
+                .listener(loggingListeners)
+                .listener(pipeline)
+                .listener(monitoringListener)
+                .build();
+    }
+
+    // ======================= CSV PARTICIONADO =======================
+
+    /**
+     * Step manager del CSV: cada partición es un rango de bytes alineado a líneas que
+     * un csvStepWorker lee con un MappedCsvUserReader. El offset de cada rango queda
+     * en el ExecutionContext de su worker, por lo que el reinicio es por rango.
+     */
+    @Bean
+    public Step csvStepManager(CsvByteRangePartitioner csvByteRangePartitioner,
+                               Step csvStepWorker,
+                               AsyncTaskExecutor taskExecutor,
+                               @Value("${batch.partition.grid-size:4}") int gridSize) {
+        return new StepBuilder("csvStepManager", jobRepository)
+                .partitioner("csvStepWorker", csvByteRangePartitioner)
+                .step(csvStepWorker)
+                .gridSize(gridSize)
+                .taskExecutor(taskExecutor)
+                .build();
+    }
+
+    @Bean
+    public Step csvStepWorker(MappedCsvUserReader mappedCsvUserReader,
+                              UserProcessingPipeline pipeline,
+                              CompositeUserWriter writer,
+                              LoggingListeners loggingListeners,
+                              SkipPolicy customSkipPolicy) {
+
+        if (adaptiveChunks) {
+            return adaptiveEtlStep("csvStepWorker", mappedCsvUserReader, pipeline, writer, null,
+                    loggingListeners, customSkipPolicy);
+        }
+
+        return new StepBuilder("csvStepWorker", jobRepository)
+                .<User, User>chunk(chunkSize)
+                .reader(mappedCsvUserReader)
+                .processor(processorFor(pipeline))
+                .writer(writerFor(pipeline, writer, customSkipPolicy))
+                .transactionManager(transactionManager)
+                .faultTolerant()
+                .skipPolicy(customSkipPolicy)
+                .retryPolicy(retryPolicy())
+                .retryListener(monitoringListener)
+                .skipListener(deadLetterWriter)
+                .listener(deadLetterWriter)
+                .listener(loggingListeners)
+                .listener(pipeline)
+                .listener(monitoringListener)
                 .build();
     }
 
+    // ======================= STEP DOS Y TRES (PARALELO) =======================
+
+    // Cada step tiene su propio reader, porque el split los ejecuta a la vez, y su propia tabla
+    // de destino (batch.writer.step-two.table / step-three.table): escribir en processed_users
+    // pisaría con los datos sin procesar lo que ha dejado stepOne.
+    // Los dos pasan por el mismo pipeline que stepOne, con sus contadores por step.
+    // Con batch.columnar.step-two-input=true, stepTwo relee la salida columnar de stepOne
+    // (columnarUserWriter debe estar en batch.writer.delegates) en lugar del CSV de entrada.
+    @Bean
+    public Step stepTwo(@Qualifier("flatFileUserReader") ItemReader<User> csvReader,
+                        @Qualifier("columnarUserReader") ItemReader<User> columnarReader,
+                        @Qualifier("csvUpsertUserWriter") UserUpsertItemWriter writer,
+                        UserProcessingPipeline pipeline,
+                        SkipPolicy customSkipPolicy,
+                        @Value("${batch.columnar.step-two-input:false}") boolean columnarInput) {
+        return copyStep("stepTwo", columnarInput ? columnarReader : csvReader, writer, pipeline, customSkipPolicy);
+    }
+
     @Bean
-    public Step stepThree(ItemReader<User> reader, ItemWriter<User> writer) {
-        return new StepBuilder("stepThree", jobRepository)
-                .<User, User>chunk(5)
+    public Step stepThree(@Qualifier("jdbcUserReader") ItemReader<User> reader,
+                          @Qualifier("dbSourceUpsertUserWriter") UserUpsertItemWriter writer,
+                          UserProcessingPipeline pipeline,
+                          SkipPolicy customSkipPolicy) {
+        return copyStep("stepThree", reader, writer, pipeline, customSkipPolicy);
+    }
+
+    // Solo escriben en BD, así que el BisectingItemWriter puede envolver el writer entero.
+    // Con batch.chunk.adaptive.enabled usan también el tamaño de chunk adaptativo, cada uno con
+    // su política
+    @SuppressWarnings("removal")
+    private Step copyStep(String name, ItemReader<User> reader, UserUpsertItemWriter writer,
+                          UserProcessingPipeline pipeline, SkipPolicy customSkipPolicy) {
+        ItemWriter<User> bisecting = new BisectingItemWriter<>(writer, transactionManager, customSkipPolicy,
+                UserSkipPolicy::isDataError, deadLetterWriter);
+        if (adaptiveChunks) {
+            AdaptiveChunkCompletionPolicy policy = new AdaptiveChunkCompletionPolicy(
+                    name, chunkSize, adaptiveMin, adaptiveMax, targetCommitMs, meterRegistry);
+            FaultTolerantStepBuilder<User, User> builder = new StepBuilder(name, jobRepository)
+                    .<User, User>chunk(policy, transactionManager)
+                    .reader(reader)
+                    .processor(processorFor(pipeline))
+                    .writer(writerFor(pipeline, bisecting, customSkipPolicy))
+                    .faultTolerant()
+                    .skipPolicy(customSkipPolicy)
+                    .listener((SkipListener<User, User>) deadLetterWriter)
+                    .listener((Object) deadLetterWriter)
+                    .listener((Object) writer)
+                    .listener((Object) pipeline)
+                    .listener((Object) monitoringListener)
+                    .listener((Object) policy);
+            for (StepExecutionListener listener : List.of(deadLetterWriter, writer, pipeline, monitoringListener, policy)) {
+                builder.listener(listener);
+            }
+            return builder.build();
+        }
+        return new StepBuilder(name, jobRepository)
+                .<User, User>chunk(chunkSize)
                 .reader(reader)
-                .writer(writer)
+                .processor(processorFor(pipeline))
+                .writer(writerFor(pipeline, bisecting, customSkipPolicy))
+                .transactionManager(transactionManager)
+                .faultTolerant()
+                .skipPolicy(customSkipPolicy)
+                .skipListener(deadLetterWriter)
+                .listener(deadLetterWriter)
+                .listener(writer)
+                .listener(pipeline)
+                .listener(monitoringListener)
                 .build();
     }
 
     // =================== TASK EXECUTOR ===================
 
+    /**
+     * Executor compartido por stepOne, los steps particionados y los flujos paralelos.
+     * Las tareas heredan el StepContext del hilo que las envía (StepContextTaskDecorator).
+     *
+     * - PLATFORM: pool fijo de hilos de plataforma (batch.executor.pool-size)
+     * - VIRTUAL: un hilo virtual por tarea. Como casi todo el tiempo se pasa bloqueado en
+     *   JDBC y ficheros, los hilos virtuales liberan el hilo portador mientras esperan.
+     *   batch.executor.concurrency-limit limita las tareas simultáneas para no agotar el
+     *   pool de conexiones de H2 (Hikari usa 10 por defecto); al llegar al límite, submit bloquea.
+     */
     @Bean
-    public AsyncTaskExecutor taskExecutor() {
+    public AsyncTaskExecutor taskExecutor(@Value("${batch.executor.mode:PLATFORM}") String mode,
+                                          @Value("${batch.executor.pool-size:4}") int poolSize,
+                                          @Value("${batch.executor.concurrency-limit:8}") int concurrencyLimit) {
+        if ("VIRTUAL".equalsIgnoreCase(mode)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-vthread-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(concurrencyLimit);
+            executor.setTaskDecorator(new StepContextTaskDecorator());
+            return executor;
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(4);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
         executor.setThreadNamePrefix("batch-thread-");
+        executor.setTaskDecorator(new StepContextTaskDecorator());
         executor.initialize();
         return executor;
     }
 
-    // =================== SKIP POLICY PERSONALIZADA ===================
-
+    /**
+     * Executor de los flows en paralelo (split y dagJob). Es distinto de taskExecutor para que
+     * un flow esperando a su step no ocupe un hilo que el propio step necesita para sus chunks
+     * o particiones. batch.flow.max-concurrency limita los flows simultáneos.
+     */
     @Bean
-    public SkipPolicy customSkipPolicy() {
-        return (throwable, skipCount) -> {
-            // Ignora hasta 5 errores de parseo de archivos
-            return throwable instanceof Exception && skipCount < 5;
-        };
+    public TaskExecutor flowTaskExecutor(@Value("${batch.flow.max-concurrency:4}") int maxConcurrency) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("batch-flow-");
+        executor.setConcurrencyLimit(maxConcurrency);
+        return executor;
     }
 
-    // =================== LISTENERS ===================
+    // =================== SKIP POLICY PERSONALIZADA ===================
 
+    /**
+     * Los errores de datos se saltan hasta batch.skip.data-error-limit; el resto, mientras el
+     * step lleve menos de batch.skip.limit skips. Ver {@link UserSkipPolicy}.
+     */
     @Bean
-    public LoggingListeners loggingListeners() {
-        return new LoggingListeners();
+    public SkipPolicy customSkipPolicy(@Value("${batch.skip.data-error-limit:100000}") long dataErrorLimit,
+                                       @Value("${batch.skip.limit:5}") long otherErrorLimit) {
+        return new UserSkipPolicy(dataErrorLimit, otherErrorLimit);
     }
 
-
 }
@@ -5,37 +5,221 @@ import org.springframework.batch.core.listener.ItemProcessListener;
 import org.springframework.batch.core.listener.ItemReadListener;
 import org.springframework.batch.core.listener.ItemWriteListener;
 import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Logging de items y chunks sin bloquear los hilos del step.
+ *
+ * - Muestreo de items: se registra uno de cada batch.logging.item.sample-every eventos por hilo
+ *   (0 = ninguno, 1 = todos) y como máximo batch.logging.item.max-per-second (0 = sin límite)
+ * - Construcción perezosa: el hilo del step solo copia los campos del usuario en un evento;
+ *   el texto se genera en el hilo de volcado
+ * - Los eventos van a una cola acotada (batch.logging.buffer-size) con offer(), que nunca espera:
+ *   si la cola está llena el evento se descarta y se cuenta como descartado
+ * - Un único hilo daemon vacía la cola y escribe en System.out, así que los hilos del step
+ *   no compiten por el lock de la consola
+ * - Los errores no se muestrean, y cada chunk escrito deja siempre un resumen con sus contadores
+ */
 @Component
-public class LoggingListeners implements ItemReadListener<User>, ItemProcessListener<User, User>, ItemWriteListener<User> {
+public class LoggingListeners implements ItemReadListener<User>, ItemProcessListener<User, User>, ItemWriteListener<User>,
+        DisposableBean {
 
+    private final int sampleEvery;
+    private final int maxPerSecond;
+    private final boolean chunkSummary;
+    private final BlockingQueue<LogEvent> queue;
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    private final ThreadLocal<ChunkStats> stats = ThreadLocal.withInitial(ChunkStats::new);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong rateWindow = new AtomicLong();
+    private final AtomicLong rateCount = new AtomicLong();
+
+    public LoggingListeners(@Value("${batch.logging.item.sample-every:1000}") int sampleEvery,
+                            @Value("${batch.logging.item.max-per-second:100}") int maxPerSecond,
+                            @Value("${batch.logging.chunk-summary:true}") boolean chunkSummary,
+                            @Value("${batch.logging.buffer-size:4096}") int bufferSize) {
+        this.sampleEvery = sampleEvery;
+        this.maxPerSecond = maxPerSecond;
+        this.chunkSummary = chunkSummary;
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, bufferSize));
+        this.drainer = new Thread(this::drain, "logging-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // =================== READ ===================
     @Override
-    public void beforeRead() { System.out.println("[Read] Antes de leer un item"); }
-    @Override
-    public void afterRead(User item) { System.out.println("[Read] Item leído: " + item); }
-    @Override
-    public void onReadError(Exception ex) { System.out.println("[Read] Error leyendo: " + ex.getMessage()); }
+    public void afterRead(User item) {
+        stats.get().read++;
+        if (sampled()) {
+            publish(new LogEvent("[Read] Item leído: ", item, null));
+        }
+    }
 
     @Override
-    public void beforeProcess(User item) { System.out.println("[Process] Antes de procesar: " + item); }
+    public void onReadError(Exception ex) {
+        errors.increment();
+        publish(new LogEvent("[Read] Error leyendo: ", null, ex.getMessage()));
+    }
+
+    // =================== PROCESS ===================
     @Override
-    public void afterProcess(User item, User result) { System.out.println("[Process] Procesado: " + result); }
+    public void afterProcess(User item, User result) {
+        if (sampled()) {
+            publish(new LogEvent(result == null ? "[Process] Filtrado: " : "[Process] Procesado: ",
+                    result == null ? item : result, null));
+        }
+    }
+
     @Override
-    public void onProcessError(User item, Exception ex) { System.out.println("[Process] Error procesando: " + item); }
+    public void onProcessError(User item, Exception ex) {
+        errors.increment();
+        publish(new LogEvent("[Process] Error procesando: ", item, ex.getMessage()));
+    }
 
+    // =================== WRITE ===================
     @Override
     public void beforeWrite(Chunk<? extends User> chunk) {
-        System.out.println("[Write] Antes de escribir " + chunk.getItems().size() + " items");
+        stats.get().writeStart = System.nanoTime();
     }
+
     @Override
     public void afterWrite(Chunk<? extends User> chunk) {
-        System.out.println("[Write] Escritos " + chunk.getItems().size() + " items");
+        ChunkStats current = stats.get();
+        if (chunkSummary) {
+            // Leídos en este hilo desde el último chunk; la diferencia con los escritos son los filtrados
+            int written = chunk.size();
+            publish(new LogEvent("[Chunk] Leídos " + current.read + ", escritos " + written
+                    + ", filtrados " + Math.max(0, current.read - written)
+                    + ", escritura " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - current.writeStart) + " ms"
+                    + ", errores acumulados " + errors.sum(), null, null));
+        }
+        current.read = 0;
     }
+
     @Override
     public void onWriteError(Exception ex, Chunk<? extends User> chunk) {
-        System.out.println("[Write] Error escribiendo: " + ex.getMessage());
+        errors.increment();
+        publish(new LogEvent("[Write] Error escribiendo " + chunk.size() + " items: ", null, ex.getMessage()));
     }
-}
 
+    // =================== MUESTREO Y COLA ===================
+
+    // Uno de cada sampleEvery eventos del hilo, y sin pasar de maxPerSecond en total
+    private boolean sampled() {
+        if (sampleEvery <= 0) {
+            return false;
+        }
+        ChunkStats current = stats.get();
+        if (++current.sampleCounter < sampleEvery) {
+            return false;
+        }
+        current.sampleCounter = 0;
+        if (maxPerSecond <= 0) {
+            return true;
+        }
+        long second = System.nanoTime() / 1_000_000_000L;
+        long window = rateWindow.get();
+        if (window != second && rateWindow.compareAndSet(window, second)) {
+            rateCount.set(0);
+        }
+        return rateCount.incrementAndGet() <= maxPerSecond;
+    }
+
+    private void publish(LogEvent event) {
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void drain() {
+        List<LogEvent> batch = new ArrayList<>(256);
+        StringBuilder text = new StringBuilder(16 * 1024);
+        while (running || !queue.isEmpty()) {
+            try {
+                LogEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, 255);
+                for (LogEvent event : batch) {
+                    event.appendTo(text);
+                    text.append(System.lineSeparator());
+                }
+                System.out.print(text);
+            } catch (InterruptedException e) {
+                running = false;
+            } finally {
+                batch.clear();
+                text.setLength(0);
+            }
+        }
+        long lost = dropped.sum();
+        if (lost > 0) {
+            System.out.println("[Logging] Eventos descartados por cola llena: " + lost);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        drainer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Evento pendiente de escribir. Copia los campos del usuario en el momento del evento,
+     * porque el mismo objeto lo siguen modificando las etapas del pipeline.
+     */
+    private static final class LogEvent {
+        private final String prefix;
+        private final boolean hasUser;
+        private final Long id;
+        private final String name;
+        private final String email;
+        private final boolean active;
+        private final String message;
+
+        LogEvent(String prefix, User user, String message) {
+            this.prefix = prefix;
+            this.hasUser = user != null;
+            this.id = hasUser ? user.getId() : null;
+            this.name = hasUser ? user.getName() : null;
+            this.email = hasUser ? user.getEmail() : null;
+            this.active = hasUser && user.isActive();
+            this.message = message;
+        }
+
+        void appendTo(StringBuilder out) {
+            out.append(prefix);
+            if (hasUser) {
+                out.append("User{id=").append(id)
+                        .append(", name='").append(name)
+                        .append("', email='").append(email)
+                        .append("', active=").append(active).append('}');
+            }
+            if (message != null) {
+                out.append(hasUser ? " - " : "").append(message);
+            }
+        }
+    }
+
+    private static final class ChunkStats {
+        int read;
+        int sampleCounter;
+        long writeStart;
+    }
+}
@@ -0,0 +1,34 @@
+package com.spring.batch.config;
+
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Propaga el StepContext del hilo que envía la tarea al hilo del taskExecutor.
+ *
+ * El ChunkOrientedStep multihilo procesa los items en el taskExecutor; sin este decorador,
+ * en esos hilos StepSynchronizationManager.getContext() es null y los listeners no pueden
+ * atribuir errores ni reintentos al step que los produce.
+ */
+class StepContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return runnable;
+        }
+        StepExecution stepExecution = context.getStepExecution();
+        return () -> {
+            StepSynchronizationManager.register(stepExecution);
+            try {
+                runnable.run();
+            } finally {
+                // Solo quita el contexto de este hilo: el step sigue registrado en el suyo
+                StepSynchronizationManager.release();
+            }
+        };
+    }
+}
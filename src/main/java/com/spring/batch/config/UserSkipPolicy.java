@@ -0,0 +1,45 @@
+package com.spring.batch.config;
+
+import com.spring.batch.processor.InvalidUserException;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.infrastructure.item.file.FlatFileParseException;
+import org.springframework.batch.infrastructure.item.file.transform.FlatFileFormatException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * Política de skip que distingue errores de datos de errores inesperados.
+ *
+ * - Errores de datos (usuario inválido, línea mal formada, violación de integridad): dependen
+ *   solo del item, así que se saltan sin reintentar, hasta dataErrorLimit skips en el step.
+ *   Una carga con miles de filas sucias termina en lugar de abortar a los pocos skips
+ * - Cualquier otra excepción: se salta solo mientras el step lleve menos de otherErrorLimit
+ *   skips en total (el comportamiento anterior, con 5)
+ */
+public class UserSkipPolicy implements SkipPolicy {
+
+    private final long dataErrorLimit;
+    private final long otherErrorLimit;
+
+    public UserSkipPolicy(long dataErrorLimit, long otherErrorLimit) {
+        this.dataErrorLimit = dataErrorLimit;
+        this.otherErrorLimit = otherErrorLimit;
+    }
+
+    @Override
+    public boolean shouldSkip(Throwable throwable, long skipCount) {
+        if (isDataError(throwable)) {
+            return skipCount < dataErrorLimit;
+        }
+        return throwable instanceof Exception && skipCount < otherErrorLimit;
+    }
+
+    /**
+     * true si el error lo provoca el contenido del item y repetirlo no cambia el resultado.
+     */
+    public static boolean isDataError(Throwable throwable) {
+        return throwable instanceof InvalidUserException
+                || throwable instanceof FlatFileParseException
+                || throwable instanceof FlatFileFormatException
+                || throwable instanceof DataIntegrityViolationException;
+    }
+}
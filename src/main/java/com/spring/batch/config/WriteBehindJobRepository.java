@@ -0,0 +1,260 @@
+package com.spring.batch.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.job.JobInstance;
+import org.springframework.batch.core.job.parameters.JobParameters;
+import org.springframework.batch.core.launch.NoSuchJobException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.NoSuchStepException;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JobRepository que agrupa las actualizaciones de cada StepExecution (write-behind).
+ *
+ * Los steps llaman a update(StepExecution) y updateExecutionContext(StepExecution) en cada
+ * commit de chunk; con chunks pequeños esas escrituras de metadatos pesan tanto como las del
+ * propio job. Aquí solo se pasan al repositorio real cada flushEveryChunks actualizaciones o cada
+ * flushIntervalMs, y siempre que el step deja de estar STARTED (fin, fallo o parada), así que
+ * el estado final es exacto.
+ *
+ * Tras una caída, el reinicio parte del último checkpoint escrito: los chunks confirmados después
+ * se vuelven a procesar, por lo que los writers deben ser idempotentes (dbUpsertUserWriter).
+ * Las peticiones de parada que el repositorio detecta en update() también se ven al escribir.
+ *
+ * Con flushEveryChunks = 1 no se agrupa nada y solo se cuentan las escrituras.
+ *
+ * Métricas: batch.repository.writes (tag operation) con las escrituras que llegan al repositorio
+ * real, y batch.repository.coalesced con las actualizaciones agrupadas que se han ahorrado.
+ */
+public class WriteBehindJobRepository implements JobRepository {
+
+    private static final class Pending {
+        int updates;
+        long lastFlush = System.nanoTime();
+        boolean stepDirty;
+        boolean contextDirty;
+    }
+
+    private final JobRepository delegate;
+    private final int flushEveryChunks;
+    private final long flushIntervalNanos;
+    private final MeterRegistry meterRegistry;
+    private final Counter coalesced;
+    private final Map<String, Counter> writes = new ConcurrentHashMap<>();
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    public WriteBehindJobRepository(JobRepository delegate, int flushEveryChunks, long flushIntervalMs,
+                                    MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.flushEveryChunks = Math.max(1, flushEveryChunks);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.meterRegistry = meterRegistry;
+        this.coalesced = Counter.builder("batch.repository.coalesced")
+                .description("Actualizaciones de StepExecution agrupadas sin escribir")
+                .register(meterRegistry);
+    }
+
+    // =================== ESCRITURAS AGRUPADAS ===================
+
+    @Override
+    public void update(StepExecution stepExecution) {
+        write(stepExecution, true);
+    }
+
+    @Override
+    public void updateExecutionContext(StepExecution stepExecution) {
+        write(stepExecution, false);
+    }
+
+    private void write(StepExecution stepExecution, boolean step) {
+        if (flushEveryChunks == 1) {
+            flush(stepExecution, step, !step);
+            return;
+        }
+        Pending state = pending.computeIfAbsent(stepExecution.getId(), id -> new Pending());
+        synchronized (state) {
+            if (step) {
+                state.stepDirty = true;
+                state.updates++;
+            } else {
+                state.contextDirty = true;
+            }
+            boolean finished = stepExecution.getStatus() != BatchStatus.STARTED || stepExecution.isTerminateOnly();
+            if (finished || state.updates >= flushEveryChunks
+                    || System.nanoTime() - state.lastFlush >= flushIntervalNanos) {
+                flush(stepExecution, state.stepDirty, state.contextDirty);
+                state.updates = 0;
+                state.lastFlush = System.nanoTime();
+                state.stepDirty = false;
+                state.contextDirty = false;
+                if (finished) {
+                    pending.remove(stepExecution.getId());
+                }
+            } else {
+                coalesced.increment();
+            }
+        }
+    }
+
+    private void flush(StepExecution stepExecution, boolean step, boolean context) {
+        if (step) {
+            counted("updateStepExecution");
+            delegate.update(stepExecution);
+        }
+        if (context) {
+            counted("updateStepExecutionContext");
+            delegate.updateExecutionContext(stepExecution);
+        }
+    }
+
+    private void counted(String operation) {
+        writes.computeIfAbsent(operation, key -> Counter.builder("batch.repository.writes")
+                .description("Escrituras de metadatos que llegan al JobRepository")
+                .tag("operation", key)
+                .register(meterRegistry)).increment();
+    }
+
+    // =================== ESCRITURAS DIRECTAS ===================
+
+    @Override
+    public JobInstance createJobInstance(String jobName, JobParameters jobParameters) {
+        counted("createJobInstance");
+        return delegate.createJobInstance(jobName, jobParameters);
+    }
+
+    @Override
+    public JobExecution createJobExecution(JobInstance jobInstance, JobParameters jobParameters,
+                                           ExecutionContext executionContext) {
+        counted("createJobExecution");
+        return delegate.createJobExecution(jobInstance, jobParameters, executionContext);
+    }
+
+    @Override
+    public StepExecution createStepExecution(String stepName, JobExecution jobExecution) {
+        counted("createStepExecution");
+        return delegate.createStepExecution(stepName, jobExecution);
+    }
+
+    @Override
+    public void update(JobExecution jobExecution) {
+        counted("updateJobExecution");
+        delegate.update(jobExecution);
+    }
+
+    @Override
+    public void updateExecutionContext(JobExecution jobExecution) {
+        counted("updateJobExecutionContext");
+        delegate.updateExecutionContext(jobExecution);
+    }
+
+    @Override
+    public void deleteJobInstance(JobInstance jobInstance) {
+        delegate.deleteJobInstance(jobInstance);
+    }
+
+    @Override
+    public void deleteJobExecution(JobExecution jobExecution) {
+        delegate.deleteJobExecution(jobExecution);
+    }
+
+    @Override
+    public void deleteStepExecution(StepExecution stepExecution) {
+        pending.remove(stepExecution.getId());
+        delegate.deleteStepExecution(stepExecution);
+    }
+
+    // =================== CONSULTAS ===================
+
+    @Override
+    public List<String> getJobNames() {
+        return delegate.getJobNames();
+    }
+
+    @Override
+    public List<JobInstance> getJobInstances(String jobName, int start, int count) {
+        return delegate.getJobInstances(jobName, start, count);
+    }
+
+    @Override
+    public List<JobInstance> findJobInstances(String jobName) {
+        return delegate.findJobInstances(jobName);
+    }
+
+    @Override
+    public JobInstance getJobInstance(long instanceId) {
+        return delegate.getJobInstance(instanceId);
+    }
+
+    @Override
+    public JobInstance getLastJobInstance(String jobName) {
+        return delegate.getLastJobInstance(jobName);
+    }
+
+    @Override
+    public JobInstance getJobInstance(String jobName, JobParameters jobParameters) {
+        return delegate.getJobInstance(jobName, jobParameters);
+    }
+
+    @Override
+    public long getJobInstanceCount(String jobName) throws NoSuchJobException {
+        return delegate.getJobInstanceCount(jobName);
+    }
+
+    @Override
+    public JobExecution getJobExecution(long executionId) {
+        return delegate.getJobExecution(executionId);
+    }
+
+    @Override
+    public List<JobExecution> getJobExecutions(JobInstance jobInstance) {
+        return delegate.getJobExecutions(jobInstance);
+    }
+
+    @Override
+    public JobExecution getLastJobExecution(JobInstance jobInstance) {
+        return delegate.getLastJobExecution(jobInstance);
+    }
+
+    @Override
+    public JobExecution getLastJobExecution(String jobName, JobParameters jobParameters) {
+        return delegate.getLastJobExecution(jobName, jobParameters);
+    }
+
+    @Override
+    public Set<JobExecution> findRunningJobExecutions(String jobName) {
+        return delegate.findRunningJobExecutions(jobName);
+    }
+
+    // Deprecado para borrar en Batch 6, pero su versión por defecto lanza
+    // UnsupportedOperationException: se delega mientras haya quien lo llame
+    @Override
+    @SuppressWarnings("removal")
+    public StepExecution getStepExecution(long jobExecutionId, long stepExecutionId) {
+        return delegate.getStepExecution(jobExecutionId, stepExecutionId);
+    }
+
+    @Override
+    public StepExecution getStepExecution(long stepExecutionId) {
+        return delegate.getStepExecution(stepExecutionId);
+    }
+
+    @Override
+    public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
+        return delegate.getLastStepExecution(jobInstance, stepName);
+    }
+
+    @Override
+    public long getStepExecutionCount(JobInstance jobInstance, String stepName) throws NoSuchStepException {
+        return delegate.getStepExecutionCount(jobInstance, stepName);
+    }
+}
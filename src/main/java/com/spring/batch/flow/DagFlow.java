@@ -0,0 +1,148 @@
+package com.spring.batch.flow;
+
+import org.springframework.batch.core.job.JobInterruptedException;
+import org.springframework.batch.core.job.flow.Flow;
+import org.springframework.batch.core.job.flow.FlowExecution;
+import org.springframework.batch.core.job.flow.FlowExecutionException;
+import org.springframework.batch.core.job.flow.FlowExecutionStatus;
+import org.springframework.batch.core.job.flow.FlowExecutor;
+import org.springframework.batch.core.job.flow.State;
+import org.springframework.batch.core.job.flow.support.state.StepState;
+import org.springframework.batch.core.step.Step;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+
+/**
+ * Flow que ejecuta un grafo de steps con dependencias (DAG).
+ *
+ * En cuanto todas las dependencias de un step terminan bien, el step se lanza en el taskExecutor,
+ * con un máximo de maxConcurrency steps a la vez. Así la duración del flow es la del camino
+ * crítico del grafo, y no la suma de los steps como con start().next().
+ *
+ * Si un step falla o se para, no se lanza ningún step nuevo; se espera a los que están en
+ * marcha y el flow termina con el peor estado. Los steps se ejecutan con el FlowExecutor del job,
+ * igual que en un split, así que al reiniciar el job los steps ya completados no se repiten.
+ *
+ * Se construye con {@link DagFlowBuilder}.
+ */
+public class DagFlow implements Flow {
+
+    private final String name;
+    private final Map<String, Step> steps;
+    private final Map<String, List<String>> dependents;
+    private final Map<String, Integer> dependencyCount;
+    private final TaskExecutor taskExecutor;
+    private final int maxConcurrency;
+    private final Map<String, State> states = new LinkedHashMap<>();
+
+    DagFlow(String name, Map<String, Step> steps, Map<String, List<String>> dependents,
+            Map<String, Integer> dependencyCount, TaskExecutor taskExecutor, int maxConcurrency) {
+        this.name = name;
+        this.steps = steps;
+        this.dependents = dependents;
+        this.dependencyCount = dependencyCount;
+        this.taskExecutor = taskExecutor;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        // Estados solo para que el job pueda localizar los steps por nombre (getStepNames, getStep)
+        steps.forEach((stepName, step) -> states.put(name + "." + stepName, new StepState(name + "." + stepName, step)));
+    }
+
+    @Override
+    public FlowExecution start(FlowExecutor executor) throws FlowExecutionException {
+        Map<String, Integer> pending = new LinkedHashMap<>(dependencyCount); // los listos, en orden de declaración
+        Deque<String> ready = new ArrayDeque<>();
+        pending.forEach((stepName, count) -> {
+            if (count == 0) {
+                ready.add(stepName);
+            }
+        });
+
+        CompletionService<StepResult> completion = new ExecutorCompletionService<>(taskExecutor);
+        FlowExecutionStatus status = FlowExecutionStatus.COMPLETED;
+        Exception failure = null;
+        int running = 0;
+
+        while (running > 0 || (!ready.isEmpty() && !status.isFail() && !status.isStop())) {
+            while (running < maxConcurrency && !ready.isEmpty() && !status.isFail() && !status.isStop()) {
+                String stepName = ready.poll();
+                completion.submit(() -> execute(executor, stepName));
+                running++;
+            }
+
+            StepResult result;
+            try {
+                result = completion.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FlowExecutionException("Interrumpido esperando a los steps del flow " + name, e);
+            } catch (ExecutionException e) {
+                throw new FlowExecutionException("Error inesperado en el flow " + name, e.getCause());
+            }
+            running--;
+
+            if (result.failure() != null && failure == null) {
+                failure = result.failure();
+            }
+            if (result.status().compareTo(status) > 0) {
+                status = result.status();
+            }
+            if (result.status().isFail() || result.status().isStop()) {
+                continue; // se dejan terminar los que están en marcha, pero no se lanza ninguno más
+            }
+            for (String dependent : dependents.getOrDefault(result.stepName(), List.of())) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new FlowExecutionException("Ha fallado un step del flow " + name, failure);
+        }
+        return new FlowExecution(name, status);
+    }
+
+    @Override
+    public FlowExecution resume(String stateName, FlowExecutor executor) throws FlowExecutionException {
+        // El grafo no tiene un estado actual: se vuelve a recorrer y el job salta los steps completados
+        return start(executor);
+    }
+
+    private StepResult execute(FlowExecutor executor, String stepName) {
+        try {
+            return new StepResult(stepName, new FlowExecutionStatus(executor.executeStep(steps.get(stepName))), null);
+        } catch (JobInterruptedException e) {
+            return new StepResult(stepName, FlowExecutionStatus.STOPPED, null);
+        } catch (Exception e) {
+            return new StepResult(stepName, FlowExecutionStatus.FAILED, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public State getState(String stateName) {
+        return states.get(stateName);
+    }
+
+    @Override
+    public Collection<State> getStates() {
+        return new ArrayList<>(states.values());
+    }
+
+    private record StepResult(String stepName, FlowExecutionStatus status, Exception failure) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.spring.batch.flow;
+
+import org.springframework.batch.core.step.Step;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builder de {@link DagFlow}: cada step declara los steps de los que depende.
+ *
+ * <pre>
+ * new DagFlowBuilder("etl", flowTaskExecutor, 4)
+ *         .step(stepOne)
+ *         .step(stepTwo, "stepOne")
+ *         .step(stepThree, "stepOne")
+ *         .build();
+ * </pre>
+ *
+ * build() comprueba que las dependencias existen y que no hay ciclos.
+ */
+public class DagFlowBuilder {
+
+    private final String name;
+    private final TaskExecutor taskExecutor;
+    private final int maxConcurrency;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+
+    public DagFlowBuilder(String name, TaskExecutor taskExecutor, int maxConcurrency) {
+        this.name = name;
+        this.taskExecutor = taskExecutor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public DagFlowBuilder step(Step step, String... dependsOn) {
+        if (steps.putIfAbsent(step.getName(), step) != null) {
+            throw new IllegalArgumentException("Step repetido en el flow " + name + ": " + step.getName());
+        }
+        dependencies.put(step.getName(), List.of(dependsOn));
+        return this;
+    }
+
+    public DagFlow build() {
+        Map<String, List<String>> dependents = new HashMap<>();
+        Map<String, Integer> dependencyCount = new LinkedHashMap<>();
+        dependencies.forEach((stepName, dependsOn) -> {
+            for (String dependency : dependsOn) {
+                if (!steps.containsKey(dependency)) {
+                    throw new IllegalStateException("El step " + stepName + " depende de " + dependency
+                            + ", que no está en el flow " + name);
+                }
+                dependents.computeIfAbsent(dependency, key -> new ArrayList<>()).add(stepName);
+            }
+            dependencyCount.put(stepName, dependsOn.size());
+        });
+        checkAcyclic(dependents, dependencyCount);
+        return new DagFlow(name, steps, dependents, dependencyCount, taskExecutor, maxConcurrency);
+    }
+
+    // Orden topológico (Kahn): si no se pueden visitar todos los steps, hay un ciclo
+    private void checkAcyclic(Map<String, List<String>> dependents, Map<String, Integer> dependencyCount) {
+        Map<String, Integer> pending = new HashMap<>(dependencyCount);
+        Deque<String> ready = new ArrayDeque<>();
+        pending.forEach((stepName, count) -> {
+            if (count == 0) {
+                ready.add(stepName);
+            }
+        });
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String stepName = ready.poll();
+            visited++;
+            for (String dependent : dependents.getOrDefault(stepName, List.of())) {
+                if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (visited != steps.size()) {
+            pending.values().removeIf(count -> count == 0);
+            throw new IllegalStateException("Dependencias circulares en el flow " + name + ": " + pending.keySet());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.spring.batch.loadtest;
+
+import com.spring.batch.config.AdvancedMonitoringListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.job.Job;
+import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.job.parameters.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobOperator;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prueba de carga de extremo a extremo (perfil loadtest).
+ *
+ * 1. Genera batch.loadtest.csv-users usuarios en el CSV (batch.csv.users-file) y
+ *    batch.loadtest.db-users en la tabla users, con los ratios de emails inválidos e inactivos
+ * 2. Lanza el job de spring.batch.job.name (el arranque automático del job está desactivado en el perfil)
+ * 3. Escribe en batch.loadtest.report un JSON con la configuración usada, el tiempo total,
+ *    registros/segundo, skips y reintentos por step, pico de heap, tiempo de GC y escrituras
+ *    de metadatos del JobRepository
+ *
+ * Para comparar configuraciones basta con sobrescribir propiedades, por ejemplo:
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=loadtest -Dspring-boot.run.arguments="--batch.chunk.size=500"
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestRunner implements ApplicationRunner {
+
+    // Propiedades que cambian el rendimiento del job y se copian al informe
+    private static final List<String> CONFIG_KEYS = List.of(
+            "batch.chunk.size", "batch.chunk.adaptive.enabled",
+            "batch.executor.mode", "batch.executor.pool-size", "batch.executor.concurrency-limit",
+            "batch.reader.composite.mode", "batch.processor.stages", "batch.processor.chunk-mode",
+            "batch.writer.delegates", "batch.writer.parallel", "batch.writer.upsert.mode",
+            "batch.writer.upsert.rows-per-statement", "batch.writer.file.buffer-bytes", "batch.writer.file.gzip",
+            "batch.logging.item.sample-every", "batch.repository.mode", "batch.repository.flush-every-chunks");
+
+    private final SyntheticUserGenerator generator;
+    private final JobOperator jobOperator;
+    private final Map<String, Job> jobs;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final ConfigurableApplicationContext context;
+    private final String jobName;
+    private final long csvUsers;
+    private final long dbUsers;
+    private final double invalidEmailRatio;
+    private final double inactiveRatio;
+    private final Resource csvFile;
+    private final Path report;
+    private final boolean exitOnFinish;
+
+    public LoadTestRunner(SyntheticUserGenerator generator,
+                          JobOperator jobOperator,
+                          Map<String, Job> jobs,
+                          Environment environment,
+                          MeterRegistry meterRegistry,
+                          ConfigurableApplicationContext context,
+                          @Value("${spring.batch.job.name:advancedJob}") String jobName,
+                          @Value("${batch.loadtest.csv-users:1000000}") long csvUsers,
+                          @Value("${batch.loadtest.db-users:1000000}") long dbUsers,
+                          @Value("${batch.loadtest.invalid-email-ratio:0}") double invalidEmailRatio,
+                          @Value("${batch.loadtest.inactive-ratio:0.25}") double inactiveRatio,
+                          @Value("${batch.csv.users-file}") Resource csvFile,
+                          @Value("${batch.loadtest.report:output/loadtest-report.json}") Path report,
+                          @Value("${batch.loadtest.exit-on-finish:true}") boolean exitOnFinish) {
+        this.generator = generator;
+        this.jobOperator = jobOperator;
+        this.jobs = jobs;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.context = context;
+        this.jobName = jobName;
+        this.csvUsers = csvUsers;
+        this.dbUsers = dbUsers;
+        this.invalidEmailRatio = invalidEmailRatio;
+        this.inactiveRatio = inactiveRatio;
+        this.csvFile = csvFile;
+        this.report = report;
+        this.exitOnFinish = exitOnFinish;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Job job = jobs.get(jobName);
+        if (job == null) {
+            throw new IllegalStateException("No existe el job " + jobName + " (disponibles: " + jobs.keySet() + ")");
+        }
+
+        // =================== DATOS ===================
+        long generationStart = System.nanoTime();
+        generator.resetTables();
+        generator.writeCsv(csvFile.getFile().toPath(), 1, csvUsers, invalidEmailRatio, inactiveRatio);
+        // Ids de la tabla a continuación de los del CSV, para que no colisionen en processed_users
+        generator.insertUsers(csvUsers + 1, dbUsers, invalidEmailRatio, inactiveRatio);
+        long generationMs = elapsedMs(generationStart);
+        System.out.println("[LoadTest] Datos generados en " + generationMs + " ms");
+
+        // =================== JOB ===================
+        System.gc(); // que el pico de heap y el GC medidos sean del job y no de la generación
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long[] gcBefore = gcTotals();
+        long[] metadataBefore = metadataTotals();
+        long jobStart = System.nanoTime();
+
+        JobExecution execution = jobOperator.start(job, new JobParametersBuilder()
+                .addLong("run.id", System.currentTimeMillis())
+                .toJobParameters());
+        // @EnableBatchProcessing lanza los jobs en el bean taskExecutor, así que start() vuelve enseguida
+        while (execution.isRunning()) {
+            Thread.sleep(100);
+        }
+
+        long wallClockMs = elapsedMs(jobStart);
+        long[] gcAfter = gcTotals();
+        long[] metadataAfter = metadataTotals();
+        // Suma de los picos de cada pool: cota superior del pico real de heap
+        long peakHeapBytes = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        String json = toJson(execution, generationMs, wallClockMs, peakHeapBytes,
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1],
+                metadataAfter[0] - metadataBefore[0], metadataAfter[1] - metadataBefore[1]);
+        if (report.getParent() != null) {
+            Files.createDirectories(report.getParent());
+        }
+        Files.writeString(report, json, StandardCharsets.UTF_8);
+        System.out.println("[LoadTest] Job " + jobName + " " + execution.getStatus()
+                + " en " + wallClockMs + " ms. Informe: " + report.toAbsolutePath());
+
+        if (exitOnFinish) {
+            int exitCode = execution.getStatus() == BatchStatus.COMPLETED ? 0 : 1;
+            System.exit(SpringApplication.exit(context, () -> exitCode));
+        }
+    }
+
+    // =================== INFORME ===================
+
+    private String toJson(JobExecution execution, long generationMs, long wallClockMs,
+                          long peakHeapBytes, long gcCount, long gcTimeMs,
+                          long metadataWrites, long metadataCoalesced) {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n");
+        json.append("  \"job\": ").append(quote(jobName)).append(",\n");
+        json.append("  \"status\": ").append(quote(execution.getStatus().name())).append(",\n");
+        json.append("  \"wallClockMs\": ").append(wallClockMs).append(",\n");
+
+        json.append("  \"dataset\": {\"csvUsers\": ").append(csvUsers)
+                .append(", \"dbUsers\": ").append(dbUsers)
+                .append(", \"invalidEmailRatio\": ").append(invalidEmailRatio)
+                .append(", \"inactiveRatio\": ").append(inactiveRatio)
+                .append(", \"generationMs\": ").append(generationMs).append("},\n");
+
+        json.append("  \"config\": {");
+        for (int i = 0; i < CONFIG_KEYS.size(); i++) {
+            String key = CONFIG_KEYS.get(i);
+            json.append(i == 0 ? "" : ", ").append(quote(key)).append(": ").append(quote(environment.getProperty(key)));
+        }
+        json.append("},\n");
+
+        json.append("  \"jvm\": {\"availableProcessors\": ").append(Runtime.getRuntime().availableProcessors())
+                .append(", \"maxHeapBytes\": ").append(Runtime.getRuntime().maxMemory())
+                .append(", \"peakHeapBytes\": ").append(peakHeapBytes)
+                .append(", \"gcCount\": ").append(gcCount)
+                .append(", \"gcTimeMs\": ").append(gcTimeMs).append("},\n");
+
+        json.append("  \"metadata\": {\"mode\": ").append(quote(environment.getProperty("batch.repository.mode", "RESOURCELESS")))
+                .append(", \"writes\": ").append(metadataWrites)
+                .append(", \"coalesced\": ").append(metadataCoalesced).append("},\n");
+
+        json.append("  \"steps\": [");
+        boolean first = true;
+        for (StepExecution step : execution.getStepExecutions()) {
+            long durationMs = step.getStartTime() == null || step.getEndTime() == null ? 0
+                    : Duration.between(step.getStartTime(), step.getEndTime()).toMillis();
+            json.append(first ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(step.getStepName()))
+                    .append(", \"status\": ").append(quote(step.getStatus().name()))
+                    .append(", \"durationMs\": ").append(durationMs)
+                    .append(", \"readCount\": ").append(step.getReadCount())
+                    .append(", \"writeCount\": ").append(step.getWriteCount())
+                    .append(", \"filterCount\": ").append(step.getFilterCount())
+                    .append(", \"recordsPerSecond\": ").append(durationMs == 0 ? 0 : step.getReadCount() * 1000 / durationMs)
+                    .append(", \"readSkipCount\": ").append(step.getReadSkipCount())
+                    .append(", \"processSkipCount\": ").append(step.getProcessSkipCount())
+                    .append(", \"writeSkipCount\": ").append(step.getWriteSkipCount())
+                    .append(", \"retryCount\": ").append(step.getExecutionContext().getLong(AdvancedMonitoringListener.RETRIES_KEY, 0L))
+                    .append(", \"commitCount\": ").append(step.getCommitCount())
+                    .append(", \"rollbackCount\": ").append(step.getRollbackCount())
+                    .append('}');
+            first = false;
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    // [escrituras de metadatos, actualizaciones agrupadas] según los contadores de WriteBehindJobRepository
+    private long[] metadataTotals() {
+        double writes = meterRegistry.find("batch.repository.writes").counters().stream()
+                .mapToDouble(Counter::count).sum();
+        Counter coalesced = meterRegistry.find("batch.repository.coalesced").counter();
+        return new long[]{(long) writes, coalesced == null ? 0 : (long) coalesced.count()};
+    }
+
+    // [número de colecciones, tiempo total en ms] sumando todos los colectores
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, time};
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
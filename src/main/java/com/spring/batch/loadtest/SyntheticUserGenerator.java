@@ -0,0 +1,82 @@
+package com.spring.batch.loadtest;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Genera usuarios sintéticos para las pruebas de carga: un CSV con el formato de data/users.csv
+ * y filas en la tabla users de H2.
+ *
+ * Un usuario tiene email inválido (sin '@') con probabilidad invalidEmailRatio y está inactivo
+ * con probabilidad inactiveRatio. El CSV usa una semilla fija, así que es reproducible.
+ */
+@Component
+@Profile("loadtest")
+public class SyntheticUserGenerator {
+
+    private static final long INSERT_BLOCK = 500_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SyntheticUserGenerator(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Crea (si no existen) y vacía las tablas de origen y destino del job.
+     */
+    public void resetTables() {
+        for (String table : new String[]{"users", "processed_users"}) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table
+                    + " (id BIGINT PRIMARY KEY, name VARCHAR(100), email VARCHAR(150), active BOOLEAN)");
+            jdbcTemplate.execute("TRUNCATE TABLE " + table);
+        }
+    }
+
+    /**
+     * Escribe count usuarios con ids firstId..firstId+count-1, precedidos de la cabecera.
+     */
+    public void writeCsv(Path file, long firstId, long count, double invalidEmailRatio, double inactiveRatio)
+            throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder line = new StringBuilder(96);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("id,name,email,active\n");
+            for (long id = firstId; id < firstId + count; id++) {
+                line.setLength(0);
+                line.append(id).append(",user").append(id).append(",user").append(id)
+                        .append(random.nextDouble() < invalidEmailRatio ? ".mail.com" : "@mail.com")
+                        .append(',').append(random.nextDouble() >= inactiveRatio).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * Inserta count usuarios con ids firstId..firstId+count-1. H2 genera las filas con
+     * SYSTEM_RANGE, en bloques para no construir una transacción gigante.
+     */
+    public void insertUsers(long firstId, long count, double invalidEmailRatio, double inactiveRatio) {
+        long last = firstId + count - 1;
+        for (long from = firstId; from <= last; from += INSERT_BLOCK) {
+            long to = Math.min(from + INSERT_BLOCK - 1, last);
+            jdbcTemplate.update("INSERT INTO users (id, name, email, active) "
+                            + "SELECT X, CONCAT('user', X), "
+                            + "CASE WHEN RAND() < ? THEN CONCAT('user', X, '.mail.com') ELSE CONCAT('user', X, '@mail.com') END, "
+                            + "RAND() >= ? FROM SYSTEM_RANGE(?, ?)",
+                    invalidEmailRatio, inactiveRatio, from, to);
+        }
+    }
+}
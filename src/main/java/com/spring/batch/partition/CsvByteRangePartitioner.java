@@ -0,0 +1,111 @@
+package com.spring.batch.partition;
+
+import com.spring.batch.reader.InflatingBufferedReaderFactory;
+import org.springframework.batch.core.partition.Partitioner;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Partitioner que divide el CSV de usuarios en rangos de bytes [startOffset, endOffset).
+ *
+ * Cada límite se desplaza hasta el inicio de la siguiente línea, de modo que ninguna línea
+ * queda partida entre dos particiones. La cabecera se excluye calculando el primer rango
+ * a partir del final de la primera línea, así los workers no tienen que saltarla.
+ *
+ * Solo admite CSV sin comprimir; con un .csv.gz falla al particionar.
+ */
+@Component
+public class CsvByteRangePartitioner implements Partitioner {
+
+    public static final String START_OFFSET = "startOffset";
+    public static final String END_OFFSET = "endOffset";
+
+    private static final int SCAN_BUFFER = 8192;
+
+    private final Resource resource;
+
+    public CsvByteRangePartitioner(@Value("${batch.csv.users-file:classpath:data/users.csv}") Resource resource) {
+        this.resource = resource;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        int grid = Math.max(1, gridSize);
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+
+        try {
+            if (InflatingBufferedReaderFactory.isGzip(resource)) {
+                // Los rangos de bytes de un gzip no se pueden descomprimir por separado
+                throw new ItemStreamException("El particionado por bytes necesita un CSV sin comprimir: "
+                        + resource + " (usar el job sin particiones CSV)");
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo leer el fichero " + resource, e);
+        }
+
+        try (FileChannel channel = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = nextLineStart(channel, 0, size); // salta la cabecera
+            long span = Math.max(1, (size - dataStart) / grid);
+
+            long start = dataStart;
+            int index = 0;
+            for (int i = 1; i <= grid && start < size; i++) {
+                long end = i == grid ? size : nextLineStart(channel, dataStart + i * span, size);
+                if (end > start) {
+                    partitions.put("csvPartition" + index++, range(start, end));
+                    start = end;
+                }
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo particionar el fichero " + resource, e);
+        }
+
+        if (partitions.isEmpty()) {
+            partitions.put("csvPartition0", range(0, 0)); // fichero vacío o solo cabecera
+        }
+        return partitions;
+    }
+
+    // Devuelve la posición justo después del siguiente '\n' desde pos (pos si ya es inicio de línea)
+    private long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        if (pos == 0 && pos < size) {
+            pos = 1; // la primera línea siempre se recorre completa (cabecera)
+        } else if (pos >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER);
+        long offset = pos - 1; // comprobamos el byte anterior para no saltar una línea entera
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private ExecutionContext range(long start, long end) {
+        ExecutionContext context = new ExecutionContext();
+        context.putLong(START_OFFSET, start);
+        context.putLong(END_OFFSET, end);
+        return context;
+    }
+}
@@ -0,0 +1,105 @@
+package com.spring.batch.partition;
+
+import org.springframework.batch.core.partition.Partitioner;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partitioner que divide la tabla users en rangos de id [minId, maxId].
+ *
+ * Estrategias:
+ * - EQUAL: rangos de igual amplitud entre MIN(id) y MAX(id). Una sola consulta barata,
+ *   pero si los ids tienen huecos las particiones pueden quedar descompensadas.
+ * - BALANCED: cuantiles con NTILE, cada partición recibe aproximadamente el mismo número de filas.
+ *
+ * Cada partición recibe en su ExecutionContext las claves minId y maxId,
+ * que el reader step-scoped de cada worker usa para acotar su consulta.
+ */
+@Component
+public class UserIdRangePartitioner implements Partitioner {
+
+    public enum Strategy { EQUAL, BALANCED }
+
+    public static final String MIN_ID = "minId";
+    public static final String MAX_ID = "maxId";
+
+    private static final String WHERE = " FROM users WHERE active = true";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Strategy strategy;
+
+    public UserIdRangePartitioner(DataSource dataSource,
+                                  @Value("${batch.partition.strategy:EQUAL}") Strategy strategy) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.strategy = strategy;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        int grid = Math.max(1, gridSize);
+        return strategy == Strategy.BALANCED ? balanced(grid) : equal(grid);
+    }
+
+    private Map<String, ExecutionContext> equal(int gridSize) {
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id" + WHERE);
+        Number min = (Number) bounds.get("min_id");
+        Number max = (Number) bounds.get("max_id");
+        if (min == null || max == null) {
+            return emptyPartition(partitions);
+        }
+
+        long minId = min.longValue();
+        long maxId = max.longValue();
+        // Amplitud redondeada hacia arriba para que el último rango llegue a maxId
+        long size = Math.max(1, (maxId - minId) / gridSize + 1);
+        int index = 0;
+        for (long start = minId; start <= maxId; start += size) {
+            long end = Math.min(maxId, start + size - 1);
+            partitions.put("partition" + index++, range(start, end));
+            if (end == maxId) {
+                break; // evita desbordamiento si maxId está cerca de Long.MAX_VALUE
+            }
+        }
+        return partitions;
+    }
+
+    private Map<String, ExecutionContext> balanced(int gridSize) {
+        Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+        // gridSize es un int validado, por lo que se puede concatenar sin riesgo
+        List<long[]> buckets = jdbcTemplate.query(
+                "SELECT bucket, MIN(id) AS min_id, MAX(id) AS max_id FROM ("
+                        + "SELECT id, NTILE(" + gridSize + ") OVER (ORDER BY id) AS bucket" + WHERE
+                        + ") t GROUP BY bucket ORDER BY bucket",
+                (rs, rowNum) -> new long[]{rs.getLong("min_id"), rs.getLong("max_id")});
+        if (buckets.isEmpty()) {
+            return emptyPartition(partitions);
+        }
+
+        int index = 0;
+        for (long[] bucket : buckets) {
+            partitions.put("partition" + index++, range(bucket[0], bucket[1]));
+        }
+        return partitions;
+    }
+
+    // Tabla vacía: una partición sin filas para que el step termine sin errores
+    private Map<String, ExecutionContext> emptyPartition(Map<String, ExecutionContext> partitions) {
+        partitions.put("partition0", range(1, 0));
+        return partitions;
+    }
+
+    private ExecutionContext range(long minId, long maxId) {
+        ExecutionContext context = new ExecutionContext();
+        context.putLong(MIN_ID, minId);
+        context.putLong(MAX_ID, maxId);
+        return context;
+    }
+}
@@ -0,0 +1,342 @@
+package com.spring.batch.pipeline;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.ItemReadListener;
+import org.springframework.batch.core.listener.SkipListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepContribution;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemProcessor;
+import org.springframework.batch.infrastructure.item.ItemStreamReader;
+import org.springframework.batch.infrastructure.item.ItemWriter;
+import org.springframework.batch.infrastructure.repeat.RepeatStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Step en pipeline por etapas, alternativa al step multihilo (batch.pipeline.enabled).
+ *
+ * En el step multihilo cada hilo lee, procesa y escribe su propio chunk, así que todos compiten
+ * por el reader y el orden de salida se pierde. Aquí cada etapa tiene sus propios hilos:
+ * - lectura: un hilo lee en orden lotes de batchSize items
+ * - proceso: processorThreads hilos aplican el processor a lotes completos
+ * - escritura: el hilo del step escribe los lotes en orden de lectura, uno por transacción
+ *
+ * Las etapas se comunican con colas acotadas: cuando el writer se retrasa, la cola de lotes
+ * pendientes se llena y el lector se bloquea (backpressure), y como mucho hay queueSize lotes
+ * en vuelo. La etapa más lenta queda siempre con trabajo y el resto se solapa con ella.
+ *
+ * Reinicio: al terminar cada lote, el hilo lector guarda el estado del reader (update) junto al
+ * lote, y el writer lo copia al ExecutionContext del step en la misma transacción en que lo
+ * escribe. El estado confirmado es siempre el del último lote escrito, no el del último leído.
+ *
+ * Los errores de lectura y de proceso pasan por la SkipPolicy y los items saltados se notifican
+ * al SkipListener; los de escritura hacen fallar el step (no hay reintentos ni skips de escritura
+ * en este modo, salvo los que resuelva el propio writer).
+ *
+ * Métricas (tag step): batch.pipeline.queue.size (tag queue=process|write) con la ocupación de
+ * cada cola, y batch.pipeline.wait (tag stage=process|write) con el tiempo que cada etapa espera
+ * a su entrada.
+ */
+public class StagedPipelineTasklet<I, O> implements Tasklet, StepExecutionListener {
+
+    private static final class Batch<I, O> {
+        final List<I> items;
+        final ExecutionContext readerState; // estado del reader justo después de este lote
+        final int readSkips;
+        final boolean last;
+        final CompletableFuture<List<O>> processed = new CompletableFuture<>();
+        // Los escribe el hilo de proceso antes de completar processed
+        int filtered;
+        int processSkips;
+
+        Batch(List<I> items, ExecutionContext readerState, int readSkips, boolean last) {
+            this.items = items;
+            this.readerState = readerState;
+            this.readSkips = readSkips;
+            this.last = last;
+        }
+    }
+
+    private final String name;
+    private final ItemStreamReader<I> reader;
+    private final ItemProcessor<I, O> processor;
+    private final ItemWriter<O> writer;
+    private final SkipPolicy skipPolicy;
+    private final SkipListener<I, O> skipListener;
+    private final int batchSize;
+    private final int processorThreads;
+    private final int queueSize;
+    private final Timer processWait;
+    private final Timer writeWait;
+    private final Batch<I, O> poison = new Batch<>(List.of(), null, 0, true);
+    private final AtomicLong skipCount = new AtomicLong();
+
+    private volatile BlockingQueue<Batch<I, O>> toProcess;
+    private volatile BlockingQueue<Batch<I, O>> toWrite;
+    private volatile boolean stopped;
+    private List<Thread> threads = List.of();
+
+    public StagedPipelineTasklet(String name, ItemStreamReader<I> reader, ItemProcessor<I, O> processor,
+                                 ItemWriter<O> writer, SkipPolicy skipPolicy, SkipListener<I, O> skipListener,
+                                 int batchSize,
+                                 int processorThreads, int queueSize, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.reader = reader;
+        this.processor = processor;
+        this.writer = writer;
+        this.skipPolicy = skipPolicy;
+        this.skipListener = skipListener;
+        this.batchSize = Math.max(1, batchSize);
+        this.processorThreads = Math.max(1, processorThreads);
+        this.queueSize = Math.max(1, queueSize);
+        this.toProcess = new ArrayBlockingQueue<>(this.queueSize);
+        this.toWrite = new ArrayBlockingQueue<>(this.queueSize);
+
+        Gauge.builder("batch.pipeline.queue.size", this, tasklet -> tasklet.toProcess.size())
+                .description("Lotes leídos pendientes de procesar")
+                .tags("step", name, "queue", "process")
+                .register(meterRegistry);
+        Gauge.builder("batch.pipeline.queue.size", this, tasklet -> tasklet.toWrite.size())
+                .description("Lotes leídos pendientes de escribir (procesados o no)")
+                .tags("step", name, "queue", "write")
+                .register(meterRegistry);
+        this.processWait = waitTimer("process", meterRegistry);
+        this.writeWait = waitTimer("write", meterRegistry);
+    }
+
+    private Timer waitTimer(String stage, MeterRegistry meterRegistry) {
+        return Timer.builder("batch.pipeline.wait")
+                .description("Tiempo que una etapa del pipeline espera a su entrada")
+                .tags("step", name, "stage", stage)
+                .register(meterRegistry);
+    }
+
+    // =================== CICLO DE VIDA ===================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        // El reader no se registra como stream del step: su estado lo guarda el writer lote a lote
+        reader.open(stepExecution.getExecutionContext());
+        stopped = false;
+        skipCount.set(0);
+        toProcess = new ArrayBlockingQueue<>(queueSize);
+        toWrite = new ArrayBlockingQueue<>(queueSize);
+
+        List<Thread> started = new ArrayList<>();
+        started.add(start(stepExecution, this::readStage, name + "-read"));
+        for (int i = 0; i < processorThreads; i++) {
+            started.add(start(stepExecution, this::processStage, name + "-process-" + i));
+        }
+        threads = started;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        // Si el step ha fallado, las etapas pueden estar bloqueadas en una cola llena
+        stopped = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads = List.of();
+        reader.close();
+        return stepExecution.getExitStatus();
+    }
+
+    // Cada etapa registra el StepContext del step en su hilo: el processor y los listeners que
+    // se llaman desde ella (dead-letter, contadores por step) saben así a qué step pertenecen
+    private static Thread start(StepExecution stepExecution, Runnable stage, String threadName) {
+        Thread thread = new Thread(() -> {
+            StepSynchronizationManager.register(stepExecution);
+            try {
+                stage.run();
+            } finally {
+                StepSynchronizationManager.close();
+            }
+        }, threadName);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    // =================== ETAPA DE ESCRITURA (hilo del step) ===================
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        Batch<I, O> batch = take(toWrite, writeWait);
+        List<O> items;
+        try {
+            items = batch.processed.get(); // los lotes se escriben en orden de lectura
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        if (!items.isEmpty()) {
+            writer.write(new Chunk<>(items));
+        }
+
+        for (int i = 0; i < batch.items.size(); i++) {
+            contribution.incrementReadCount();
+        }
+        contribution.incrementReadSkipCount(batch.readSkips);
+        contribution.incrementProcessSkipCount(batch.processSkips);
+        contribution.incrementFilterCount(batch.filtered);
+        contribution.incrementWriteCount(items.size());
+
+        ExecutionContext stepContext = chunkContext.getStepContext().getStepExecution().getExecutionContext();
+        for (Map.Entry<String, Object> entry : batch.readerState.entrySet()) {
+            stepContext.put(entry.getKey(), entry.getValue());
+        }
+        return batch.last ? RepeatStatus.FINISHED : RepeatStatus.CONTINUABLE;
+    }
+
+    // =================== ETAPA DE LECTURA ===================
+
+    @SuppressWarnings("unchecked")
+    private void readStage() {
+        try {
+            boolean last = false;
+            while (!last && !stopped) {
+                List<I> items = new ArrayList<>(batchSize);
+                int readSkips = 0;
+                Exception failure = null;
+                while (items.size() < batchSize) {
+                    try {
+                        I item = reader.read();
+                        if (item == null) {
+                            last = true;
+                            break;
+                        }
+                        items.add(item);
+                        // El tasklet no tiene listeners de lectura propios: si el processor lo es
+                        // (p. ej. el pipeline con la etapa "enrich") se le avisa aquí
+                        if (processor instanceof ItemReadListener<?> readListener) {
+                            ((ItemReadListener<I>) readListener).afterRead(item);
+                        }
+                    } catch (Exception e) {
+                        if (!shouldSkip(e)) {
+                            failure = e;
+                            break;
+                        }
+                        readSkips++;
+                        skipListener.onSkipInRead(e);
+                    }
+                }
+                ExecutionContext state = new ExecutionContext();
+                reader.update(state);
+                Batch<I, O> batch = new Batch<>(items, state, readSkips, last || failure != null);
+                // Primero en la cola del writer, que fija el orden y limita los lotes en vuelo
+                toWrite.put(batch);
+                if (failure != null) {
+                    batch.processed.completeExceptionally(failure);
+                    return;
+                }
+                toProcess.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // afterStep: el step ha terminado
+        } catch (RuntimeException | Error e) {
+            // Fallo fuera de read() (por ejemplo en update): el writer lo recibe como último lote
+            Batch<I, O> failed = new Batch<>(List.of(), new ExecutionContext(), 0, true);
+            failed.processed.completeExceptionally(e);
+            try {
+                toWrite.put(failed);
+            } catch (InterruptedException ignored) {
+                // afterStep: el step ha terminado
+            }
+        } finally {
+            for (int i = 0; i < processorThreads; i++) {
+                toProcess.offer(poison);
+            }
+        }
+    }
+
+    // =================== ETAPA DE PROCESO ===================
+
+    private void processStage() {
+        try {
+            while (true) {
+                Batch<I, O> batch = take(toProcess, processWait);
+                if (batch == poison) {
+                    return;
+                }
+                process(batch);
+            }
+        } catch (InterruptedException e) {
+            // afterStep: el step ha terminado
+        }
+    }
+
+    private void process(Batch<I, O> batch) {
+        try {
+            List<O> output = new ArrayList<>(batch.items.size());
+            for (I item : batch.items) {
+                try {
+                    O result = processor.process(item);
+                    if (result == null) {
+                        batch.filtered++;
+                    } else {
+                        output.add(result);
+                    }
+                } catch (Exception e) {
+                    if (!shouldSkip(e)) {
+                        throw e;
+                    }
+                    batch.processSkips++;
+                    skipListener.onSkipInProcess(item, e);
+                }
+            }
+            batch.processed.complete(output);
+        } catch (Throwable e) {
+            batch.processed.completeExceptionally(e);
+        }
+    }
+
+    // =================== UTILIDADES ===================
+
+    // La SkipPolicy ve el total de skips del step, sumando lectura y proceso
+    private boolean shouldSkip(Exception e) {
+        try {
+            if (skipPolicy.shouldSkip(e, skipCount.get())) {
+                skipCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        } catch (RuntimeException limitExceeded) {
+            return false;
+        }
+    }
+
+    private static <T> T take(BlockingQueue<T> queue, Timer waitTimer) throws InterruptedException {
+        T next = queue.poll();
+        if (next == null) {
+            long start = System.nanoTime();
+            next = queue.take();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return next;
+    }
+}
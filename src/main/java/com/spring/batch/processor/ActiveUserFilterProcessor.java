@@ -1,19 +1,31 @@
 package com.spring.batch.processor;
 
 import com.spring.batch.model.User;
-import org.springframework.batch.infrastructure.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Processor que filtra usuarios inactivos.
  * Si el usuario no está activo, devuelve null (Spring Batch lo ignora).
  */
 @Component
-public class ActiveUserFilterProcessor implements ItemProcessor<User, User> {
+public class ActiveUserFilterProcessor implements UserColumnStage {
 
     @Override
     public User process(User user) {
         return user.isActive() ? user : null;
     }
+
+    @Override
+    public void processChunk(List<User> items) {
+        items.removeIf(user -> !user.isActive());
+    }
+
+    @Override
+    public void processColumns(UserColumns columns) {
+        // Filtrar es una AND de bitsets: siguen vivas solo las filas activas
+        columns.live().and(columns.active());
+    }
 }
 
@@ -0,0 +1,133 @@
+package com.spring.batch.processor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché acotada y thread-safe para las búsquedas de las etapas de enriquecimiento.
+ *
+ * Las claves se reparten por hash entre segmentos; cada segmento es un LinkedHashMap en orden
+ * de acceso con su propio lock y expulsa la entrada menos usada recientemente (LRU) al superar
+ * su parte de maxSize. Con varios hilos del step, cada uno suele bloquear un segmento distinto.
+ *
+ * Con ttlMillis > 0 las entradas caducan: una entrada caducada cuenta como fallo y como
+ * expulsión.
+ *
+ * Cuenta aciertos, fallos y expulsiones (acumulados desde la creación).
+ */
+public class BoundedLookupCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final class Segment extends LinkedHashMap<K, Entry<V>> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final List<Segment> segments;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedLookupCache(int maxSize, long ttlMillis) {
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        this.segments = new ArrayList<>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment(perSegment));
+        }
+        this.ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000L : 0;
+    }
+
+    /**
+     * Valor de la clave, o null si no está o ha caducado. Cuenta como acierto o fallo.
+     */
+    public V get(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null && expired(entry)) {
+                segment.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value();
+        }
+    }
+
+    /**
+     * true si la clave está y no ha caducado. No cuenta en las estadísticas; sí la marca como usada
+     * (quien pregunta va a pedirla enseguida y así no se expulsa entre medias).
+     */
+    public boolean contains(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            return entry != null && !expired(entry);
+        }
+    }
+
+    public void put(K key, V value) {
+        long expiresAt = ttlNanos > 0 ? System.nanoTime() + ttlNanos : Long.MAX_VALUE;
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new Entry<>(value, expiresAt));
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private Segment segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments.get((hash ^ (hash >>> 16)) & (SEGMENTS - 1));
+    }
+
+    private boolean expired(Entry<V> entry) {
+        return ttlNanos > 0 && System.nanoTime() - entry.expiresAt() > 0;
+    }
+}
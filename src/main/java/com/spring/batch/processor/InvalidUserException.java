@@ -0,0 +1,15 @@
+package com.spring.batch.processor;
+
+/**
+ * Error de validación de un usuario: depende solo de los datos del item, así que
+ * reintentarlo siempre da el mismo resultado. No se reintenta; se salta directamente
+ * (ver UserSkipPolicy) y el item va a la dead-letter.
+ *
+ * Extiende IllegalArgumentException para que el código que ya capturaba ese tipo siga funcionando.
+ */
+public class InvalidUserException extends IllegalArgumentException {
+
+    public InvalidUserException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.spring.batch.processor;
+
+import com.spring.batch.model.User;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Etapa que sabe procesar un chunk en columnas ({@link UserColumns}) directamente.
+ *
+ * Solo trabaja con las filas vivas: filtrar una fila es borrar su bit en live(). Debe dar el
+ * mismo resultado que process() aplicado item a item, incluidas las excepciones.
+ */
+public interface UserColumnStage extends UserStage {
+
+    void processColumns(UserColumns columns) throws Exception;
+
+    /**
+     * Como processColumns(), pero las filas rechazadas por datos inválidos se borran de live() y
+     * se pasan a rejected (ver {@link UserStage#processChunk(java.util.List, BiConsumer)}).
+     */
+    default void processColumns(UserColumns columns, BiConsumer<User, InvalidUserException> rejected)
+            throws Exception {
+        processColumns(columns);
+    }
+}
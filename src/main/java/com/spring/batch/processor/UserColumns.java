@@ -0,0 +1,225 @@
+package com.spring.batch.processor;
+
+import com.spring.batch.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Chunk de usuarios en columnas (struct of arrays) para las etapas que implementan
+ * {@link UserColumnStage}.
+ *
+ * - ids en un long[] (y un bitset de ids nulos)
+ * - active en un bitset
+ * - name como (inicio, longitud) sobre un único byte[] compartido, al que se copia al
+ *   transformarlo (las filas filtradas antes nunca se copian). Los nombres con caracteres
+ *   no ASCII (pocos) se guardan como String aparte
+ * - email: ninguna etapa lo modifica, así que se lee del User original sin copiarlo
+ * - live: bitset de filas que siguen en el chunk; filtrar es borrar su bit
+ *
+ * Los arrays se reutilizan de un chunk al siguiente (una instancia por hilo, ver of()), así
+ * que recorrer el chunk por las etapas no crea objetos: la transformación del nombre se hace
+ * sobre el byte[] y las filas filtradas no generan nada. Al volver a Chunk<User> (toUsers())
+ * se reutilizan los User originales y solo se crea el String de los nombres modificados de
+ * las filas que quedan.
+ */
+public final class UserColumns {
+
+    private static final ThreadLocal<UserColumns> POOL = ThreadLocal.withInitial(UserColumns::new);
+
+    private int size;
+    private User[] rows = new User[0];
+    private long[] ids = new long[0];
+    private int[] nameStart = new int[0];
+    private int[] nameLength = new int[0];
+    private final BitSet idNulls = new BitSet();
+    private final BitSet active = new BitSet();
+    private final BitSet live = new BitSet();
+    private final BitSet namesLoaded = new BitSet();
+    private final BitSet renamed = new BitSet();
+    private String[] wideNames = new String[0]; // nombres no ASCII, fuera del byte[]
+    private byte[] bytes = new byte[4096];
+    private int used;
+
+    private UserColumns() {
+    }
+
+    /**
+     * Carga los usuarios en las columnas de este hilo. La instancia es válida hasta la
+     * siguiente llamada a of() en el mismo hilo.
+     */
+    public static UserColumns of(List<? extends User> users) {
+        UserColumns columns = POOL.get();
+        columns.load(users);
+        return columns;
+    }
+
+    /**
+     * Usuarios que siguen en el chunk, en su orden original, con los nombres actualizados.
+     */
+    public List<User> toUsers() {
+        List<User> users = new ArrayList<>(live.cardinality());
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            User user = rows[i];
+            if (renamed.get(i)) {
+                user.setName(wideNames[i] != null
+                        ? wideNames[i]
+                        : new String(bytes, nameStart[i], nameLength[i], StandardCharsets.ISO_8859_1));
+            }
+            users.add(user);
+        }
+        Arrays.fill(rows, 0, size, null); // no retener los User hasta el siguiente chunk
+        return users;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int liveCount() {
+        return live.cardinality();
+    }
+
+    // =================== ACCESO PARA LAS ETAPAS ===================
+
+    BitSet live() {
+        return live;
+    }
+
+    BitSet active() {
+        return active;
+    }
+
+    Long id(int row) {
+        return idNulls.get(row) ? null : ids[row];
+    }
+
+    User row(int row) {
+        return rows[row];
+    }
+
+    String email(int row) {
+        return rows[row].getEmail();
+    }
+
+    boolean hasName(int row) {
+        return rows[row].getName() != null;
+    }
+
+    /**
+     * Equivalente a name.trim().toUpperCase(). Los nombres ASCII se copian ya recortados y en
+     * mayúsculas al byte[] en una sola pasada; los demás pasan por String.toUpperCase, que puede
+     * cambiar la longitud (ß → SS).
+     */
+    void trimUpperCaseName(int row) {
+        if (namesLoaded.get(row)) {
+            if (wideNames[row] != null) {
+                wideNames[row] = wideNames[row].trim().toUpperCase();
+                renamed.set(row);
+            } else {
+                trimUpperCaseInPlace(row);
+            }
+            return;
+        }
+        namesLoaded.set(row);
+        String name = rows[row].getName();
+        int start = 0;
+        int end = name.length();
+        while (start < end && name.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && name.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        boolean changed = start != 0 || end != name.length();
+        int length = end - start;
+        ensureBytes(length);
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(start + i);
+            if (c >= 0x80) {
+                wideNames[row] = name.trim().toUpperCase(); // no ASCII: se transforma como String
+                renamed.set(row);
+                return;
+            }
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+                changed = true;
+            }
+            bytes[used + i] = (byte) c;
+        }
+        nameStart[row] = used;
+        nameLength[row] = length;
+        used += length;
+        if (changed) {
+            renamed.set(row);
+        }
+    }
+
+    // Mismo recorte y paso a mayúsculas sobre un nombre ASCII que ya está en el byte[]
+    private void trimUpperCaseInPlace(int row) {
+        int start = nameStart[row];
+        int end = start + nameLength[row];
+        while (start < end && bytes[start] <= ' ') {
+            start++;
+        }
+        while (end > start && bytes[end - 1] <= ' ') {
+            end--;
+        }
+        boolean changed = start != nameStart[row] || end != nameStart[row] + nameLength[row];
+        for (int i = start; i < end; i++) {
+            byte c = bytes[i];
+            if (c >= 'a' && c <= 'z') {
+                bytes[i] = (byte) (c - ('a' - 'A'));
+                changed = true;
+            }
+        }
+        nameStart[row] = start;
+        nameLength[row] = end - start;
+        if (changed) {
+            renamed.set(row);
+        }
+    }
+
+    // =================== CARGA ===================
+
+    private void load(List<? extends User> users) {
+        size = users.size();
+        if (rows.length < size) {
+            int capacity = Math.max(size, rows.length * 2);
+            rows = new User[capacity];
+            ids = new long[capacity];
+            nameStart = new int[capacity];
+            nameLength = new int[capacity];
+            wideNames = new String[capacity];
+        }
+        idNulls.clear();
+        active.clear();
+        namesLoaded.clear();
+        renamed.clear();
+        Arrays.fill(wideNames, 0, size, null);
+        live.clear();
+        live.set(0, size);
+        used = 0;
+        for (int i = 0; i < size; i++) {
+            User user = users.get(i);
+            rows[i] = user;
+            if (user.getId() == null) {
+                idNulls.set(i);
+            } else {
+                ids[i] = user.getId();
+            }
+            if (user.isActive()) {
+                active.set(i);
+            }
+        }
+    }
+
+    private void ensureBytes(int extra) {
+        if (used + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, used + extra));
+        }
+    }
+}
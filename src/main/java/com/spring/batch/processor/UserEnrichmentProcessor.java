@@ -0,0 +1,299 @@
+package com.spring.batch.processor;
+
+import com.spring.batch.model.User;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.ItemReadListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Etapa "enrich" del pipeline: completa cada usuario con su ficha maestra de la tabla users.
+ *
+ * Si el id existe en users, el name y el email de la tabla (cuando no son null) sustituyen a
+ * los del item; si no existe, el item sigue igual. Las fichas se guardan en una
+ * BoundedLookupCache (tamaño máximo y TTL opcional), también las ausentes, para no volver a
+ * preguntar por ellas.
+ *
+ * Las búsquedas nunca son de una fila:
+ * - como ItemReadListener, afterRead() apunta los ids leídos que no están en caché; el primer
+ *   fallo de process() los busca todos juntos con SELECT ... WHERE id IN (...), así que cuesta
+ *   una consulta por chunk y no una por item
+ * - en modo chunk, processChunk() busca de una vez los ids del chunk que faltan
+ * Los IN se parten en lotes de lookupBatchSize ids.
+ *
+ * Con warmUp=true, beforeStep() precarga la caché (si está vacía) con hasta maxSize fichas.
+ *
+ * Los aciertos, fallos, expulsiones y consultas se publican en Micrometer
+ * (batch.enrichment.cache), acumulados desde el arranque. Al terminar cada step se copian a su
+ * ExecutionContext los de ese step: aciertos, fallos y consultas se cuentan por StepExecution
+ * (como los contadores del pipeline); las expulsiones son de la caché compartida y se guarda la
+ * diferencia entre el inicio y el final del step.
+ */
+@Component
+public class UserEnrichmentProcessor implements UserStage, ItemReadListener<User>, StepExecutionListener {
+
+    private static final String COLUMNS = "SELECT id, name, email FROM users";
+
+    // Ficha maestra; ABSENT marca en la caché los ids que no están en users
+    private record Profile(String name, String email) {
+    }
+
+    private static final Profile ABSENT = new Profile(null, null);
+
+    // Estadísticas de un step
+    private static final class Stats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder queries = new LongAdder();
+        final long evictionsAtStart;
+
+        Stats(long evictionsAtStart) {
+            this.evictionsAtStart = evictionsAtStart;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BoundedLookupCache<Long, Profile> cache;
+    private final int maxSize;
+    private final int lookupBatchSize;
+    private final boolean warmUp;
+    private final Queue<Long> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder queries = new LongAdder();
+    private final Map<Long, Stats> statsByStep = new ConcurrentHashMap<>();
+    private final Stats unscoped = new Stats(0);
+
+    public UserEnrichmentProcessor(DataSource dataSource,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${batch.enrichment.cache-size:100000}") int maxSize,
+                                   @Value("${batch.enrichment.ttl-ms:0}") long ttlMillis,
+                                   @Value("${batch.enrichment.lookup-batch-size:500}") int lookupBatchSize,
+                                   @Value("${batch.enrichment.warm-up:false}") boolean warmUp) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.maxSize = Math.max(1, maxSize);
+        this.cache = new BoundedLookupCache<>(this.maxSize, ttlMillis);
+        this.lookupBatchSize = Math.max(1, lookupBatchSize);
+        this.warmUp = warmUp;
+
+        registerCounter(meterRegistry, "hit", cache, BoundedLookupCache::hits);
+        registerCounter(meterRegistry, "miss", cache, BoundedLookupCache::misses);
+        registerCounter(meterRegistry, "eviction", cache, BoundedLookupCache::evictions);
+        FunctionCounter.builder("batch.enrichment.queries", queries, LongAdder::doubleValue)
+                .description("Consultas IN lanzadas por la etapa de enriquecimiento")
+                .register(meterRegistry);
+        Gauge.builder("batch.enrichment.cache.size", cache, BoundedLookupCache::size)
+                .description("Fichas en la caché de enriquecimiento")
+                .register(meterRegistry);
+    }
+
+    // =================== PROCESO ===================
+
+    @Override
+    public User process(User user) {
+        Long id = user.getId();
+        if (id == null) {
+            return user;
+        }
+        Stats stats = stats();
+        Profile profile = cache.get(id);
+        if (profile == null) {
+            stats.misses.increment();
+            // Fallo: se busca este id junto con todos los leídos y aún no buscados
+            Set<Long> ids = new LinkedHashSet<>();
+            ids.add(id);
+            drainPending(ids);
+            profile = load(ids, stats).get(id);
+        } else {
+            stats.hits.increment();
+        }
+        return apply(user, profile);
+    }
+
+    @Override
+    public void processChunk(List<User> items) {
+        Stats stats = stats();
+        Set<Long> missing = new LinkedHashSet<>();
+        List<Profile> profiles = new ArrayList<>(items.size());
+        for (User user : items) {
+            Profile profile = user.getId() == null ? null : cache.get(user.getId());
+            if (profile == null && user.getId() != null) {
+                stats.misses.increment();
+                missing.add(user.getId());
+            } else if (profile != null) {
+                stats.hits.increment();
+            }
+            profiles.add(profile);
+        }
+        Map<Long, Profile> loaded = missing.isEmpty() ? Collections.emptyMap() : load(missing, stats);
+        for (int i = 0; i < items.size(); i++) {
+            User user = items.get(i);
+            Profile profile = profiles.get(i);
+            if (profile == null && user.getId() != null) {
+                profile = loaded.get(user.getId());
+            }
+            apply(user, profile);
+        }
+    }
+
+    @Override
+    public void afterRead(User item) {
+        Long id = item.getId();
+        // Tope de pendientes: los ids de items que otra etapa filtra antes no llegan a process()
+        // y solo se buscan con el siguiente fallo
+        if (id != null && pendingCount.get() < lookupBatchSize * 4 && !cache.contains(id)) {
+            pending.add(id);
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    private static User apply(User user, Profile profile) {
+        if (profile != null && profile != ABSENT) {
+            if (profile.name() != null) {
+                user.setName(profile.name());
+            }
+            if (profile.email() != null) {
+                user.setEmail(profile.email());
+            }
+        }
+        return user;
+    }
+
+    // =================== BÚSQUEDAS ===================
+
+    private void drainPending(Set<Long> ids) {
+        Long id;
+        while ((id = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            ids.add(id);
+        }
+    }
+
+    // Busca los ids en lotes de IN (...), los guarda en la caché (ABSENT si no existen)
+    // y devuelve lo encontrado
+    private Map<Long, Profile> load(Set<Long> ids, Stats stats) {
+        Map<Long, Profile> found = new HashMap<>(ids.size() * 2);
+        List<Long> batch = new ArrayList<>(Math.min(ids.size(), lookupBatchSize));
+        for (Long id : ids) {
+            batch.add(id);
+            if (batch.size() == lookupBatchSize) {
+                query(batch, found);
+                stats.queries.increment();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            query(batch, found);
+            stats.queries.increment();
+        }
+        for (Long id : ids) {
+            Profile profile = found.get(id);
+            if (profile == null) {
+                found.put(id, ABSENT);
+                cache.put(id, ABSENT);
+            } else {
+                cache.put(id, profile);
+            }
+        }
+        return found;
+    }
+
+    private void query(List<Long> ids, Map<Long, Profile> found) {
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query(COLUMNS + " WHERE id IN (" + placeholders + ")",
+                rs -> {
+                    found.put(rs.getLong("id"), new Profile(rs.getString("name"), rs.getString("email")));
+                }, ids.toArray());
+        queries.increment();
+    }
+
+    // =================== CICLO DE VIDA ===================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        Stats stats = new Stats(cache.evictions());
+        statsByStep.put(stepExecution.getId(), stats);
+        if (!warmUp || cache.size() > 0) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        JdbcTemplate bulk = new JdbcTemplate(jdbcTemplate.getDataSource());
+        bulk.setFetchSize(1000);
+        bulk.setMaxRows(maxSize);
+        AtomicInteger loaded = new AtomicInteger();
+        bulk.query(COLUMNS + " ORDER BY id", rs -> {
+            cache.put(rs.getLong("id"), new Profile(rs.getString("name"), rs.getString("email")));
+            loaded.incrementAndGet();
+        });
+        queries.increment();
+        stats.queries.increment();
+        System.out.println("[Enrichment] " + stepExecution.getStepName() + ": caché precargada con "
+                + loaded.get() + " fichas en " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        // Los ids apuntados que nadie llegó a buscar no pasan al siguiente step
+        Set<Long> discarded = new LinkedHashSet<>();
+        drainPending(discarded);
+
+        Stats stats = statsByStep.remove(stepExecution.getId());
+        if (stats == null) {
+            stats = new Stats(cache.evictions());
+        }
+        long evictions = cache.evictions() - stats.evictionsAtStart;
+        ExecutionContext context = stepExecution.getExecutionContext();
+        context.putLong("enrichment.cache.hits", stats.hits.sum());
+        context.putLong("enrichment.cache.misses", stats.misses.sum());
+        context.putLong("enrichment.cache.evictions", evictions);
+        context.putLong("enrichment.queries", stats.queries.sum());
+        System.out.println("[Enrichment] " + stepExecution.getStepName()
+                + ": aciertos=" + stats.hits.sum()
+                + ", fallos=" + stats.misses.sum()
+                + ", expulsiones=" + evictions
+                + ", consultas=" + stats.queries.sum()
+                + ", en caché=" + cache.size());
+        return stepExecution.getExitStatus();
+    }
+
+    private static void registerCounter(MeterRegistry meterRegistry, String result,
+                                        BoundedLookupCache<Long, Profile> cache,
+                                        ToLongFunction<BoundedLookupCache<Long, Profile>> value) {
+        FunctionCounter.builder("batch.enrichment.cache", cache, value::applyAsLong)
+                .description("Búsquedas en la caché de enriquecimiento por resultado")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    // Estadísticas del step que se ejecuta en este hilo
+    private Stats stats() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return unscoped;
+        }
+        return statsByStep.computeIfAbsent(context.getStepExecution().getId(), id -> new Stats(cache.evictions()));
+    }
+}
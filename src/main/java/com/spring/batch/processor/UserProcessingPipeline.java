@@ -0,0 +1,264 @@
+package com.spring.batch.processor;
+
+import com.spring.batch.model.User;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.ItemReadListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Pipeline de procesamiento de usuarios con etapas configurables.
+ *
+ * Sustituye a la lambda que encadenaba validación, transformación y filtro en orden fijo:
+ * - el orden se define con batch.processor.stages (por defecto el filtro de activos va primero,
+ *   porque es la etapa más barata y la que más items descarta)
+ * - las etapas se guardan en un array y se recorren en un bucle plano, sin lambdas anidadas
+ * - processChunk() recorre el chunk etapa por etapa, un bucle cerrado por etapa
+ * - processColumns() hace lo mismo sobre el chunk en columnas (batch.processor.columnar)
+ * - con un consumidor rejected, los items con datos inválidos se apartan del chunk en lugar de
+ *   lanzar InvalidUserException para todo el chunk (ver ChunkProcessingUserWriter)
+ *
+ * Las etapas que además son ItemReadListener o StepExecutionListener (como "enrich", que no está
+ * en el orden por defecto) reciben esos eventos a través del pipeline, que es el listener
+ * registrado en los steps.
+ *
+ * Cuenta por etapa los items de entrada, salida y filtrados (LongAdder, seguro con el taskExecutor).
+ * El pipeline es un singleton que comparten steps simultáneos (workers de una partición, el
+ * split), así que los contadores son de cada StepExecution: se buscan por el StepContext del
+ * hilo y al terminar el step se copian a su ExecutionContext y se descartan. Las llamadas fuera
+ * de un step (benchmarks) cuentan en unos contadores aparte que no se publican.
+ */
+@Component
+public class UserProcessingPipeline implements ItemProcessor<User, User>, ItemReadListener<User>,
+        StepExecutionListener {
+
+    // Contadores de un step, uno por etapa
+    private static final class Counters {
+        final LongAdder[] in;
+        final LongAdder[] out;
+        final LongAdder[] filtered;
+
+        Counters(int stages) {
+            in = new LongAdder[stages];
+            out = new LongAdder[stages];
+            filtered = new LongAdder[stages];
+            for (int i = 0; i < stages; i++) {
+                in[i] = new LongAdder();
+                out[i] = new LongAdder();
+                filtered[i] = new LongAdder();
+            }
+        }
+    }
+
+    private final String[] names;
+    private final UserStage[] stages;
+    private final Map<Long, Counters> countersByStep = new ConcurrentHashMap<>();
+    private final Counters unscoped;
+    private final boolean chunkMode;
+    private final boolean columnar;
+
+    public UserProcessingPipeline(UserValidationProcessor validator,
+                                  UserTransformProcessor transformer,
+                                  ActiveUserFilterProcessor filter,
+                                  UserEnrichmentProcessor enricher,
+                                  @Value("${batch.processor.stages:filter,validate,transform}") List<String> order,
+                                  @Value("${batch.processor.chunk-mode:false}") boolean chunkMode,
+                                  @Value("${batch.processor.columnar:false}") boolean columnar) {
+        Map<String, UserStage> available = Map.of(
+                "validate", validator,
+                "transform", transformer,
+                "filter", filter,
+                "enrich", enricher);
+
+        int size = order.size();
+        this.names = new String[size];
+        this.stages = new UserStage[size];
+        for (int i = 0; i < size; i++) {
+            String name = order.get(i).trim();
+            UserStage stage = available.get(name);
+            if (stage == null) {
+                throw new IllegalArgumentException("Etapa desconocida en batch.processor.stages: " + name
+                        + " (disponibles: " + available.keySet() + ")");
+            }
+            names[i] = name;
+            stages[i] = stage;
+        }
+        this.unscoped = new Counters(size);
+        this.chunkMode = chunkMode;
+        this.columnar = columnar;
+    }
+
+    /**
+     * Si es true, el step no usa este pipeline como ItemProcessor sino que lo aplica
+     * sobre el chunk completo antes de escribir (ver ChunkProcessingUserWriter).
+     */
+    public boolean isChunkMode() {
+        return chunkMode;
+    }
+
+    /**
+     * En modo chunk, si es true el chunk se procesa en columnas (UserColumns) en lugar de
+     * como lista de User.
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    @Override
+    public User process(User item) throws Exception {
+        Counters counters = counters();
+        LongAdder[] in = counters.in;
+        LongAdder[] out = counters.out;
+        LongAdder[] filtered = counters.filtered;
+        User current = item;
+        for (int i = 0; i < stages.length; i++) {
+            in[i].increment();
+            current = stages[i].process(current);
+            if (current == null) {
+                filtered[i].increment();
+                return null;
+            }
+            out[i].increment();
+        }
+        return current;
+    }
+
+    // Sin consumidor, un item inválido falla el chunk entero, como en process()
+    private static final BiConsumer<User, InvalidUserException> FAIL = (user, e) -> {
+        throw e;
+    };
+
+    /**
+     * Procesa todos los items de la lista etapa por etapa, compactándola in situ.
+     */
+    public void processChunk(List<User> items) throws Exception {
+        processChunk(items, FAIL);
+    }
+
+    /**
+     * Como processChunk(items), pero los items rechazados por datos inválidos se quitan de la
+     * lista y se pasan a rejected. Cuentan como filtrados de la etapa que los rechaza.
+     */
+    public void processChunk(List<User> items, BiConsumer<User, InvalidUserException> rejected) throws Exception {
+        Counters counters = counters();
+        LongAdder[] in = counters.in;
+        LongAdder[] out = counters.out;
+        LongAdder[] filtered = counters.filtered;
+        for (int i = 0; i < stages.length && !items.isEmpty(); i++) {
+            int before = items.size();
+            in[i].add(before);
+            stages[i].processChunk(items, rejected);
+            int after = items.size();
+            out[i].add(after);
+            filtered[i].add(before - after);
+        }
+    }
+
+    /**
+     * Procesa el chunk en columnas etapa por etapa. Las etapas que no implementan
+     * UserColumnStage reciben las filas vivas como lista de User.
+     */
+    public List<User> processColumns(UserColumns columns) throws Exception {
+        return processColumns(columns, FAIL);
+    }
+
+    /**
+     * Como processColumns(columns), apartando los items rechazados por datos inválidos.
+     */
+    public List<User> processColumns(UserColumns columns, BiConsumer<User, InvalidUserException> rejected)
+            throws Exception {
+        Counters counters = counters();
+        LongAdder[] in = counters.in;
+        LongAdder[] out = counters.out;
+        LongAdder[] filtered = counters.filtered;
+        for (int i = 0; i < stages.length; i++) {
+            int before = columns.liveCount();
+            if (before == 0) {
+                break;
+            }
+            in[i].add(before);
+            if (stages[i] instanceof UserColumnStage stage) {
+                stage.processColumns(columns, rejected);
+            } else {
+                List<User> items = columns.toUsers();
+                stages[i].processChunk(items, rejected);
+                columns = UserColumns.of(items);
+            }
+            int after = columns.liveCount();
+            out[i].add(after);
+            filtered[i].add(before - after);
+        }
+        return columns.toUsers();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterRead(User item) {
+        for (UserStage stage : stages) {
+            if (stage instanceof ItemReadListener<?> listener) {
+                ((ItemReadListener<User>) listener).afterRead(item);
+            }
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        countersByStep.put(stepExecution.getId(), new Counters(stages.length));
+        for (UserStage stage : stages) {
+            if (stage instanceof StepExecutionListener listener) {
+                listener.beforeStep(stepExecution);
+            }
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        for (UserStage stage : stages) {
+            if (stage instanceof StepExecutionListener listener) {
+                listener.afterStep(stepExecution);
+            }
+        }
+        Counters counters = countersByStep.remove(stepExecution.getId());
+        if (counters == null) {
+            counters = new Counters(stages.length); // el step no llegó a procesar nada
+        }
+        ExecutionContext context = stepExecution.getExecutionContext();
+        StringBuilder summary = new StringBuilder("[Pipeline] ").append(stepExecution.getStepName()).append(':');
+        for (int i = 0; i < stages.length; i++) {
+            long stageIn = counters.in[i].sum();
+            long stageOut = counters.out[i].sum();
+            long stageFiltered = counters.filtered[i].sum();
+            context.putLong("pipeline." + names[i] + ".in", stageIn);
+            context.putLong("pipeline." + names[i] + ".out", stageOut);
+            context.putLong("pipeline." + names[i] + ".filtered", stageFiltered);
+            summary.append(' ').append(names[i])
+                    .append("(in=").append(stageIn)
+                    .append(", out=").append(stageOut)
+                    .append(", filtrados=").append(stageFiltered).append(')');
+        }
+        System.out.println(summary);
+        return stepExecution.getExitStatus();
+    }
+
+    // Contadores del step que se ejecuta en este hilo (también los hilos del taskExecutor y del
+    // pipeline por etapas, que heredan el StepContext)
+    private Counters counters() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            return unscoped;
+        }
+        return countersByStep.computeIfAbsent(context.getStepExecution().getId(), id -> new Counters(stages.length));
+    }
+}
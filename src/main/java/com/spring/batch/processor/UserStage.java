@@ -0,0 +1,39 @@
+package com.spring.batch.processor;
+
+import com.spring.batch.model.User;
+import org.springframework.batch.infrastructure.item.ItemProcessor;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Etapa del pipeline de procesamiento de usuarios.
+ *
+ * Además del process() item a item de ItemProcessor, permite procesar un chunk completo
+ * en un único bucle. Por defecto se compacta la lista in situ: los items filtrados (null)
+ * se eliminan sin crear listas intermedias. Las etapas pueden sobrescribirlo con un bucle
+ * más específico.
+ */
+public interface UserStage extends ItemProcessor<User, User> {
+
+    default void processChunk(List<User> items) throws Exception {
+        int size = items.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            User result = process(items.get(i));
+            if (result != null) {
+                items.set(kept++, result);
+            }
+        }
+        items.subList(kept, size).clear();
+    }
+
+    /**
+     * Como processChunk(), pero los items que la etapa rechaza por datos inválidos se quitan de la
+     * lista y se pasan a rejected, en lugar de lanzar la excepción para todo el chunk. Por defecto
+     * la etapa no rechaza nada.
+     */
+    default void processChunk(List<User> items, BiConsumer<User, InvalidUserException> rejected) throws Exception {
+        processChunk(items);
+    }
+}
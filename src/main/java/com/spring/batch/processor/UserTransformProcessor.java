@@ -1,20 +1,40 @@
 package com.spring.batch.processor;
 
 import com.spring.batch.model.User;
-import org.springframework.batch.infrastructure.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * Processor que transforma los datos del usuario.
  * En este caso, convierte el nombre a mayúsculas.
  */
 @Component
-public class UserTransformProcessor implements ItemProcessor<User, User> {
+public class UserTransformProcessor implements UserColumnStage {
 
     @Override
     public User process(User user) {
         user.setName(user.getName().trim().toUpperCase());
         return user;
     }
+
+    @Override
+    public void processChunk(List<User> items) {
+        // La transformación nunca filtra, así que basta con recorrer la lista
+        for (int i = 0, size = items.size(); i < size; i++) {
+            process(items.get(i));
+        }
+    }
+
+    @Override
+    public void processColumns(UserColumns columns) {
+        var live = columns.live();
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (!columns.hasName(row)) {
+                throw new NullPointerException("Usuario sin nombre: id=" + columns.id(row));
+            }
+            columns.trimUpperCaseName(row); // sobre el byte[] compartido (ISO-8859-1) de UserColumns, sin Strings intermedios
+        }
+    }
 }
 
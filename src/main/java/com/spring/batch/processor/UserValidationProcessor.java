@@ -2,22 +2,64 @@ package com.spring.batch.processor;
 
 
 import com.spring.batch.model.User;
-import org.springframework.batch.infrastructure.item.ItemProcessor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.function.BiConsumer;
+
 /**
  * Processor que valida el formato del email.
- * Si el email no contiene '@', lanza una excepción para ser manejada por retry/skip.
+ * Si el email no contiene '@', lanza InvalidUserException: el item se salta sin reintentos.
+ * En modo chunk (y columnar) el item inválido se quita del chunk y se pasa a rejected, de modo
+ * que el resto del chunk sigue adelante sin el scan item a item del step.
  */
 @Component
-public class UserValidationProcessor implements ItemProcessor<User, User> {
+public class UserValidationProcessor implements UserColumnStage {
 
     @Override
     public User process(User user) {
         if (!user.getEmail().contains("@")) {
-            throw new IllegalArgumentException("Email inválido: " + user.getEmail());
+            throw new InvalidUserException("Email inválido: " + user.getEmail());
         }
         return user;
     }
+
+    @Override
+    public void processChunk(List<User> items, BiConsumer<User, InvalidUserException> rejected) {
+        int size = items.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            User user = items.get(i);
+            if (user.getEmail().contains("@")) {
+                items.set(kept++, user);
+            } else {
+                rejected.accept(user, new InvalidUserException("Email inválido: " + user.getEmail()));
+            }
+        }
+        items.subList(kept, size).clear();
+    }
+
+    @Override
+    public void processColumns(UserColumns columns, BiConsumer<User, InvalidUserException> rejected) {
+        var live = columns.live();
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            String email = columns.email(row);
+            if (!email.contains("@")) {
+                live.clear(row);
+                rejected.accept(columns.row(row), new InvalidUserException("Email inválido: " + email));
+            }
+        }
+    }
+
+    @Override
+    public void processColumns(UserColumns columns) {
+        var live = columns.live();
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            String email = columns.email(row);
+            if (!email.contains("@")) {
+                throw new InvalidUserException("Email inválido: " + email);
+            }
+        }
+    }
 }
 
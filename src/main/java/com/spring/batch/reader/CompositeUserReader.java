@@ -1,14 +1,18 @@
 package com.spring.batch.reader;
 
 import com.spring.batch.model.User;
-import org.springframework.batch.infrastructure.item.ItemReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamReader;
 import org.springframework.batch.infrastructure.item.database.JdbcCursorItemReader;
 import org.springframework.batch.infrastructure.item.file.FlatFileItemReader;
+import org.springframework.batch.infrastructure.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Reader compuesto que combina dos fuentes de datos:
@@ -17,47 +21,159 @@ import java.util.List;
  *
  * En Spring Batch 6 ya no existe CompositeItemReader.setDelegates(),
  * por lo que la lógica de combinación se implementa manualmente.
+ *
+ * Los delegados se leen en streaming (un item cada vez), sin cargar nada en memoria:
+ *  - SEQUENTIAL: primero todo el CSV y después la BD
+ *  - INTERLEAVED: alterna un item de cada fuente mientras queden datos
+ *
+ * Implementa ItemStream: cada delegado guarda su posición en el ExecutionContext del step
+ * y este reader guarda qué fuente toca leer, de modo que un reinicio continúa donde se quedó.
+ * read() y update() se serializan con un lock para poder usarse desde el taskExecutor de stepOne.
+ *
+ * En modo incremental se descartan los usuarios que no superan la marca de su fuente
+ * (la BD ya los filtra en la consulta; el CSV se recorre entero) y se anota el mayor id leído,
+ * que se guarda también en el ExecutionContext para que sobreviva a los reinicios.
+ * Los usuarios presentes en las dos fuentes se descartan aquí con {@link UserIdDeduplicator}.
+ *
+ * Con batch.reader.prefetch.queue-size > 0 cada delegado se envuelve en un
+ * {@link PrefetchingItemReader}, que lee por adelantado en su propio hilo mientras se procesa.
  */
 @Component
-public class CompositeUserReader implements ItemReader<User> {
+public class CompositeUserReader implements ItemStreamReader<User> {
 
-    private final FlatFileItemReader<User> csvReader;
-    private final JdbcCursorItemReader<User> dbReader;
+    public enum Mode { SEQUENTIAL, INTERLEAVED }
 
-    private Iterator<User> iterator; // iterador interno de los usuarios combinados
+    private static final String CURRENT_KEY = "compositeUserReader.current";
+    private static final String EXHAUSTED_KEY = "compositeUserReader.exhausted";
+
+    private final List<ItemStreamReader<User>> delegates;
+    // Fuente de cada delegado, en el mismo orden, para las marcas del modo incremental
+    private final List<String> sources = List.of(UserHighWaterMarks.CSV_SOURCE, UserHighWaterMarks.DB_SOURCE);
+    private final Mode mode;
+    private final UserHighWaterMarks highWaterMarks;
+    private final UserIdDeduplicator deduplicator;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int current;        // índice de la fuente que toca leer
+    private boolean[] exhausted; // fuentes que ya devolvieron null
 
     public CompositeUserReader(FlatFileItemReader<User> csvReader,
-                               JdbcCursorItemReader<User> dbReader) {
-        this.csvReader = csvReader;
-        this.dbReader = dbReader;
+                               JdbcCursorItemReader<User> dbReader,
+                               @Value("${batch.reader.composite.mode:SEQUENTIAL}") Mode mode,
+                               UserHighWaterMarks highWaterMarks,
+                               UserIdDeduplicator deduplicator,
+                               MeterRegistry meterRegistry,
+                               @Value("${batch.reader.prefetch.queue-size:1000}") int prefetchQueueSize) {
+        deduplicator.checkMode(mode);
+        this.delegates = List.of(prefetching(csvReader, prefetchQueueSize, meterRegistry),
+                prefetching(dbReader, prefetchQueueSize, meterRegistry));
+        this.mode = mode;
+        this.highWaterMarks = highWaterMarks;
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        lock.lock();
+        try {
+            for (ItemStreamReader<User> delegate : delegates) {
+                delegate.open(executionContext);
+            }
+            deduplicator.open();
+            highWaterMarks.restore(executionContext);
+            current = executionContext.getInt(CURRENT_KEY, 0);
+            exhausted = new boolean[delegates.size()];
+            int mask = executionContext.getInt(EXHAUSTED_KEY, 0);
+            for (int i = 0; i < exhausted.length; i++) {
+                exhausted[i] = (mask & (1 << i)) != 0;
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public User read() throws Exception {
-        // Inicializamos iterator si es null
-        if (iterator == null) {
-            List<User> combined = new ArrayList<>();
+        lock.lock();
+        try {
+            // Como mucho una vuelta completa por las fuentes antes de dar el fin de datos
+            for (int attempts = 0; attempts < delegates.size(); attempts++) {
+                if (!exhausted[current]) {
+                    User item = readNew(current);
+                    if (item != null) {
+                        if (mode == Mode.INTERLEAVED) {
+                            advance();
+                        }
+                        return item;
+                    }
+                    exhausted[current] = true;
+                }
+                advance();
+            }
+            return null; // todas las fuentes agotadas
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Leemos todos los usuarios del CSV
-            User item;
-            csvReader.open(null); // ExecutionContext nulo en este ejemplo
-            while ((item = csvReader.read()) != null) {
-                combined.add(item);
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        lock.lock();
+        try {
+            for (ItemStreamReader<User> delegate : delegates) {
+                delegate.update(executionContext);
             }
-            csvReader.close();
+            int mask = 0;
+            for (int i = 0; i < exhausted.length; i++) {
+                if (exhausted[i]) {
+                    mask |= 1 << i;
+                }
+            }
+            executionContext.putInt(CURRENT_KEY, current);
+            executionContext.putInt(EXHAUSTED_KEY, mask);
+            highWaterMarks.save(executionContext);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Leemos todos los usuarios de la BD
-            dbReader.open(null);
-            while ((item = dbReader.read()) != null) {
-                combined.add(item);
+    @Override
+    public void close() throws ItemStreamException {
+        lock.lock();
+        try {
+            for (ItemStreamReader<User> delegate : delegates) {
+                delegate.close();
+            }
+            if (deduplicator.duplicates() > 0) {
+                System.out.println("[Dedup] Usuarios repetidos descartados: " + deduplicator.duplicates());
             }
-            dbReader.close();
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // Creamos iterador
-            iterator = combined.iterator();
+    // Siguiente item de la fuente que supera su marca y no está repetido en la otra fuente
+    private User readNew(int source) throws Exception {
+        String name = sources.get(source);
+        User item;
+        while ((item = delegates.get(source).read()) != null) {
+            if (!highWaterMarks.isNew(name, item.getId())) {
+                continue;
+            }
+            highWaterMarks.observe(name, item.getId());
+            if (deduplicator.accept(name, item.getId())) {
+                return item;
+            }
         }
+        return null;
+    }
+
+    private static ItemStreamReader<User> prefetching(AbstractItemCountingItemStreamItemReader<User> reader,
+                                                      int queueSize, MeterRegistry meterRegistry) {
+        return queueSize > 0 ? new PrefetchingItemReader<>(reader, queueSize, meterRegistry) : reader;
+    }
 
-        // Devolvemos siguiente elemento o null si no hay más
-        return iterator.hasNext() ? iterator.next() : null;
+    private void advance() {
+        current = (current + 1) % delegates.size();
     }
 }
@@ -1,14 +1,16 @@
 package com.spring.batch.reader;
 
 import com.spring.batch.model.User;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.infrastructure.item.file.FlatFileItemReader;
+import org.springframework.batch.infrastructure.item.file.LineMapper;
 import org.springframework.batch.infrastructure.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.infrastructure.item.file.mapping.BeanWrapperFieldSetMapper;
-import org.springframework.batch.infrastructure.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.infrastructure.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
 
 /**
  * Reader que lee usuarios desde un archivo CSV utilizando FlatFileItemReaderBuilder (Spring Batch 6).
@@ -23,31 +25,47 @@ public class CsvUserReader {
 
     /**
      * Configura un lector de archivos CSV para objetos User.
+     * El fichero es el mismo que leen las particiones CSV (batch.csv.users-file), y puede
+     * venir comprimido en gzip (.csv.gz): se detecta por su cabecera y se descomprime en
+     * streaming, en un hilo aparte si batch.csv.inflate.read-ahead-blocks > 0.
      *
      * @return un FlatFileItemReader<User> configurado con mapeo de campos.
      */
     @Bean
-    public FlatFileItemReader<User> flatFileUserReader() {
-        // Tokenizer: define cómo separar las columnas del CSV
-        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();
-        tokenizer.setDelimiter(",");
-        tokenizer.setNames("id", "name", "email", "active");
-
-        // Mapeador: convierte los valores del CSV en una instancia de User
-        BeanWrapperFieldSetMapper<User> fieldMapper = new BeanWrapperFieldSetMapper<>();
-        fieldMapper.setTargetType(User.class);
-
-        // LineMapper: une el tokenizer y el fieldMapper
-        DefaultLineMapper<User> lineMapper = new DefaultLineMapper<>();
-        lineMapper.setLineTokenizer(tokenizer);
-        lineMapper.setFieldSetMapper(fieldMapper);
-
+    public FlatFileItemReader<User> flatFileUserReader(
+            @Value("${batch.csv.users-file:classpath:data/users.csv}") Resource resource,
+            @Value("${batch.csv.inflate.block-bytes:65536}") int blockBytes,
+            @Value("${batch.csv.inflate.read-ahead-blocks:8}") int readAheadBlocks) {
         // Builder moderno de Spring Batch 6
         return new FlatFileItemReaderBuilder<User>()
                 .name("flatFileUserReader")                // identificador del reader
-                .resource(new ClassPathResource("data/users.csv")) // ubicación del CSV
+                .resource(resource)                        // ubicación del CSV
+                .bufferedReaderFactory(new InflatingBufferedReaderFactory(blockBytes, readAheadBlocks))
                 .linesToSkip(1)                            // omitir cabecera
-                .lineMapper(lineMapper)                    // cómo mapear cada línea
+                .lineMapper(userLineMapper())              // cómo mapear cada línea
                 .build();
     }
+
+    /**
+     * Reader de cada partición CSV: lee con FileChannel.map el rango de bytes que el
+     * CsvByteRangePartitioner deja en el ExecutionContext del worker.
+     *
+     * El fichero debe estar en el sistema de ficheros (no dentro de un jar) y sin comprimir
+     * para poder mapearlo.
+     */
+    @Bean
+    @StepScope
+    public MappedCsvUserReader mappedCsvUserReader(
+            @Value("${batch.csv.users-file:classpath:data/users.csv}") Resource resource,
+            @Value("#{stepExecutionContext['startOffset']}") Long startOffset,
+            @Value("#{stepExecutionContext['endOffset']}") Long endOffset,
+            @Value("${batch.csv.map-window-bytes:67108864}") int windowSize) throws IOException {
+        return new MappedCsvUserReader(resource.getFile().toPath(), startOffset, endOffset,
+                userLineMapper(), windowSize);
+    }
+
+    private LineMapper<User> userLineMapper() {
+        // Mapeo directo de id,name,email,active a User, sin tokenizer ni BeanWrapper
+        return new UserLineMapper();
+    }
 }
@@ -2,12 +2,19 @@ package com.spring.batch.reader;
 
 
 import com.spring.batch.model.User;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.infrastructure.item.database.JdbcCursorItemReader;
+import org.springframework.batch.infrastructure.item.database.JdbcPagingItemReader;
+import org.springframework.batch.infrastructure.item.database.Order;
 import org.springframework.batch.infrastructure.item.database.builder.JdbcCursorItemReaderBuilder;
+import org.springframework.batch.infrastructure.item.database.builder.JdbcPagingItemReaderBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.RowMapper;
 
 import javax.sql.DataSource;
+import java.util.Map;
 
 /**
  * Reader que obtiene usuarios activos desde una base de datos.
@@ -16,19 +23,59 @@ import javax.sql.DataSource;
 @Configuration
 public class DbUserReader {
 
+    /**
+     * En modo incremental solo lee los ids mayores que la marca de la tabla users; el parámetro
+     * se fija al abrir el cursor, cuando UserHighWaterMarks ya ha cargado las marcas del job.
+     * fetchSize es el número de filas que el driver trae en cada ida y vuelta a la BD.
+     */
     @Bean
-    public JdbcCursorItemReader<User> jdbcUserReader(DataSource dataSource) {
+    public JdbcCursorItemReader<User> jdbcUserReader(DataSource dataSource, UserHighWaterMarks highWaterMarks,
+                                                     @Value("${batch.reader.jdbc.fetch-size:1000}") int fetchSize) {
         return new JdbcCursorItemReaderBuilder<User>()
                 .name("jdbcUserReader")
                 .dataSource(dataSource)
-                .sql("SELECT id, name, email, active FROM users WHERE active = true")
-                .rowMapper((rs, rowNum) -> new User(
-                        rs.getLong("id"),
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getBoolean("active")
-                ))
+                .sql("SELECT id, name, email, active FROM users WHERE active = true AND id > ? ORDER BY id")
+                .preparedStatementSetter(ps -> ps.setLong(1, highWaterMarks.lowerBound(UserHighWaterMarks.DB_SOURCE)))
+                .fetchSize(fetchSize)
+                .rowMapper(userRowMapper())
                 .build();
     }
+
+    /**
+     * Reader de cada partición de stepOne: solo lee el rango [minId, maxId] que el
+     * UserIdRangePartitioner deja en el ExecutionContext del worker.
+     *
+     * JdbcPagingItemReader pagina por clave (WHERE id > último id leído), así que cada página
+     * es una consulta corta por índice y el reinicio continúa desde el último id confirmado.
+     */
+    @Bean
+    @StepScope
+    public JdbcPagingItemReader<User> jdbcPartitionUserReader(
+            DataSource dataSource,
+            @Value("#{stepExecutionContext['minId']}") Long minId,
+            @Value("#{stepExecutionContext['maxId']}") Long maxId,
+            @Value("${batch.partition.page-size:500}") int pageSize) throws Exception {
+        return new JdbcPagingItemReaderBuilder<User>()
+                .name("jdbcPartitionUserReader")
+                .dataSource(dataSource)
+                .selectClause("SELECT id, name, email, active")
+                .fromClause("FROM users")
+                .whereClause("WHERE active = true AND id BETWEEN :minId AND :maxId")
+                .parameterValues(Map.of("minId", minId, "maxId", maxId))
+                .sortKeys(Map.of("id", Order.ASCENDING))
+                .pageSize(pageSize)
+                .fetchSize(pageSize)
+                .rowMapper(userRowMapper())
+                .build();
+    }
+
+    private RowMapper<User> userRowMapper() {
+        return (rs, rowNum) -> new User(
+                rs.getLong("id"),
+                rs.getString("name"),
+                rs.getString("email"),
+                rs.getBoolean("active")
+        );
+    }
 }
 
@@ -0,0 +1,75 @@
+package com.spring.batch.reader;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Conjunto de ids long en un bitmap paginado (al estilo de los roaring bitmaps): el id se parte
+ * en página (bits altos) y posición dentro de la página (16 bits bajos). Cada página son
+ * 65536 bits (8 KB) y solo se reserva cuando se añade el primer id de su rango, así que
+ * 10 millones de ids consecutivos ocupan ~1,2 MB, frente a cientos de MB de un HashSet<Long>.
+ *
+ * add() y contains() no usan locks: las páginas se crean con compareAndExchange y los bits se
+ * activan con CAS sobre la palabra, de modo que varios hilos pueden compartir el conjunto.
+ * Los ids negativos o mayores que 2^31 - 1 (no se esperan) van a un conjunto aparte.
+ */
+public class LongBitmapSet {
+
+    private static final int PAGE_BITS = 16;
+    private static final int WORDS_PER_PAGE = 1 << (PAGE_BITS - 6);
+    private static final int MAX_PAGES = 1 << (31 - PAGE_BITS);
+    private static final long MAX_PAGED_ID = ((long) MAX_PAGES << PAGE_BITS) - 1;
+    private static final LongBinaryOperator OR = (word, mask) -> word | mask;
+
+    private volatile AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(MAX_PAGES);
+    private volatile Set<Long> overflow = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Añade el id; devuelve false si ya estaba.
+     */
+    public boolean add(long id) {
+        if (id < 0 || id > MAX_PAGED_ID) {
+            return overflow.add(id);
+        }
+        AtomicLongArray page = page((int) (id >>> PAGE_BITS), true);
+        long mask = 1L << id; // el desplazamiento solo usa los 6 bits bajos
+        long previous = page.getAndAccumulate(wordIndex(id), mask, OR);
+        return (previous & mask) == 0;
+    }
+
+    public boolean contains(long id) {
+        if (id < 0 || id > MAX_PAGED_ID) {
+            return overflow.contains(id);
+        }
+        AtomicLongArray page = page((int) (id >>> PAGE_BITS), false);
+        return page != null && (page.get(wordIndex(id)) & (1L << id)) != 0;
+    }
+
+    /**
+     * Vacía el conjunto. No debe llamarse mientras otros hilos añaden ids.
+     */
+    public void clear() {
+        pages = new AtomicReferenceArray<>(MAX_PAGES);
+        overflow = ConcurrentHashMap.newKeySet();
+    }
+
+    private AtomicLongArray page(int index, boolean create) {
+        AtomicReferenceArray<AtomicLongArray> directory = pages;
+        AtomicLongArray page = directory.get(index);
+        if (page == null && create) {
+            AtomicLongArray created = new AtomicLongArray(WORDS_PER_PAGE);
+            page = directory.compareAndExchange(index, null, created);
+            if (page == null) {
+                page = created; // la ha creado este hilo
+            }
+        }
+        return page;
+    }
+
+    private static int wordIndex(long id) {
+        return (int) (id >>> 6) & (WORDS_PER_PAGE - 1);
+    }
+}
@@ -0,0 +1,138 @@
+package com.spring.batch.reader;
+
+import com.spring.batch.model.User;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamReader;
+import org.springframework.batch.infrastructure.item.ItemStreamSupport;
+import org.springframework.batch.infrastructure.item.file.LineMapper;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader que lee un rango de bytes [start, end) de un CSV mediante FileChannel.map.
+ *
+ * Pensado para los workers de la partición CSV: el CsvByteRangePartitioner garantiza que
+ * start y end caen en inicios de línea y que la cabecera queda fuera del primer rango.
+ * El fichero se mapea por ventanas (windowSize) para soportar ficheros de varios GB;
+ * si una línea cruza el final de la ventana se vuelve a mapear desde el inicio de esa línea.
+ *
+ * Guarda en el ExecutionContext el offset de la siguiente línea, de modo que un reinicio
+ * continúa exactamente en el mismo punto de su rango.
+ */
+public class MappedCsvUserReader extends ItemStreamSupport implements ItemStreamReader<User> {
+
+    private static final String POSITION_KEY = "position";
+    private static final String LINE_KEY = "line";
+
+    private final Path path;
+    private final long start;
+    private final long end;
+    private final LineMapper<User> lineMapper;
+    private final int windowSize;
+
+    private FileChannel channel;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private int lineNumber;
+    private byte[] lineBuffer = new byte[256];
+
+    public MappedCsvUserReader(Path path, long start, long end, LineMapper<User> lineMapper, int windowSize) {
+        this.path = path;
+        this.start = start;
+        this.end = end;
+        this.lineMapper = lineMapper;
+        this.windowSize = windowSize;
+        setName("mappedCsvUserReader");
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        position = executionContext.getLong(getExecutionContextKey(POSITION_KEY), start);
+        lineNumber = executionContext.getInt(getExecutionContextKey(LINE_KEY), 0);
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo abrir el fichero " + path, e);
+        }
+    }
+
+    @Override
+    public User read() throws Exception {
+        while (position < end) {
+            String line = nextLine();
+            lineNumber++;
+            if (!line.isEmpty()) {
+                return lineMapper.mapLine(line, lineNumber);
+            }
+        }
+        return null; // fin del rango
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putLong(getExecutionContextKey(POSITION_KEY), position);
+        executionContext.putInt(getExecutionContextKey(LINE_KEY), lineNumber);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        window = null; // el mapeo se libera cuando el GC recoge el buffer
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("No se pudo cerrar el fichero " + path, e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    private String nextLine() throws IOException {
+        if (window == null || position >= windowStart + window.limit()) {
+            map(position);
+        }
+        while (true) {
+            int from = (int) (position - windowStart);
+            int limit = window.limit();
+            int i = from;
+            while (i < limit && window.get(i) != '\n') {
+                i++;
+            }
+
+            boolean found = i < limit;
+            if (found || windowStart + limit >= end) {
+                position = windowStart + i + (found ? 1 : 0);
+                int length = i - from;
+                if (length > 0 && window.get(i - 1) == '\r') {
+                    length--;
+                }
+                return decode(from, length);
+            }
+            if (from == 0) {
+                throw new IOException("Línea mayor que la ventana de mapeo (" + windowSize + " bytes) en offset " + position);
+            }
+            map(position); // la línea cruza la ventana: remapeamos desde su inicio
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowSize, end - offset));
+    }
+
+    private String decode(int from, int length) {
+        if (lineBuffer.length < length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        window.get(from, lineBuffer, 0, length);
+        return new String(lineBuffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
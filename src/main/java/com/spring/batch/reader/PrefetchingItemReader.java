@@ -0,0 +1,149 @@
+package com.spring.batch.reader;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamReader;
+import org.springframework.batch.infrastructure.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorador que lee por adelantado: un hilo de fondo va llenando una cola acotada con los items
+ * del delegado mientras el step procesa los anteriores, de modo que la espera de E/S del cursor
+ * o del fichero se solapa con el procesamiento.
+ *
+ * Reinicio: el delegado va por delante de lo que ha consumido el step, así que en update() se
+ * sustituye su read.count por el número de items realmente entregados. Al reabrir, el delegado
+ * salta hasta ese item (jumpToItem) y los que estaban en la cola se vuelven a leer.
+ *
+ * Las excepciones del delegado se entregan en su posición, como si las lanzara read(), y el
+ * hilo sigue leyendo (igual que haría el step tras un skip).
+ *
+ * Métricas (tag reader):
+ * - batch.reader.prefetch.queue.depth: items leídos y aún no consumidos
+ * - batch.reader.prefetch.wait: tiempo que read() espera con la cola vacía
+ */
+public class PrefetchingItemReader<T> implements ItemStreamReader<T> {
+
+    private static final String READ_COUNT = "read.count";
+    private static final Object END = new Object();
+
+    private record Failure(Exception exception) {
+    }
+
+    private final AbstractItemCountingItemStreamItemReader<T> delegate;
+    private final int queueSize;
+    private final Timer waitTimer;
+
+    private volatile BlockingQueue<Object> queue;
+    private Thread filler;
+    private int consumed;    // items entregados (incluidas las excepciones), la posición de reinicio
+    private boolean finished;
+
+    public PrefetchingItemReader(AbstractItemCountingItemStreamItemReader<T> delegate, int queueSize,
+                                 MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.queueSize = queueSize;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.waitTimer = Timer.builder("batch.reader.prefetch.wait")
+                .description("Tiempo que read() espera a que el hilo de lectura anticipada llene la cola")
+                .tag("reader", delegate.getName())
+                .register(meterRegistry);
+        Gauge.builder("batch.reader.prefetch.queue.depth", this, reader -> reader.queue.size())
+                .description("Items leídos por adelantado pendientes de consumir")
+                .tag("reader", delegate.getName())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.open(executionContext);
+        consumed = delegate.getCurrentItemCount(); // tras un reinicio, el delegado ya ha saltado hasta aquí
+        finished = false;
+        queue = new ArrayBlockingQueue<>(queueSize);
+        filler = new Thread(this::fill, "prefetch-" + delegate.getName());
+        filler.setDaemon(true);
+        filler.start();
+    }
+
+    @Override
+    public T read() throws Exception {
+        if (finished) {
+            return null;
+        }
+        Object next = queue.poll();
+        if (next == null) {
+            long start = System.nanoTime();
+            next = queue.take();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (next == END) {
+            finished = true;
+            return null;
+        }
+        consumed++;
+        if (next instanceof Failure failure) {
+            throw failure.exception();
+        }
+        @SuppressWarnings("unchecked")
+        T item = (T) next;
+        return item;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        delegate.update(executionContext);
+        if (delegate.isSaveState()) {
+            executionContext.putInt(delegate.getExecutionContextKey(READ_COUNT), consumed);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (filler != null) {
+            filler.interrupt();
+            try {
+                filler.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            filler = null;
+        }
+        delegate.close();
+    }
+
+    // Hilo de fondo: lee hasta el final de datos o hasta que close() lo interrumpe
+    private void fill() {
+        BlockingQueue<Object> target = queue;
+        try {
+            while (true) {
+                Object next;
+                try {
+                    T item = delegate.read();
+                    next = item == null ? END : item;
+                } catch (Exception e) {
+                    next = new Failure(e);
+                }
+                target.put(next);
+                if (next == END) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() antes de llegar al final de datos
+        } catch (Error e) {
+            // Que read() no se quede esperando a un hilo que ya no existe
+            try {
+                target.put(new Failure(new IllegalStateException("Error en la lectura anticipada", e)));
+            } catch (InterruptedException ignored) {
+                // close() en curso
+            }
+            throw e;
+        }
+    }
+}
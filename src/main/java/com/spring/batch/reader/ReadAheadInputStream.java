@@ -0,0 +1,136 @@
+package com.spring.batch.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * InputStream que lee el origen en un hilo de fondo, por bloques, en una cola acotada.
+ *
+ * Con un GZIPInputStream como origen, la descompresión se hace en ese hilo mientras el step
+ * parsea y procesa las líneas ya descomprimidas. En memoria nunca hay más de
+ * blocks + 1 bloques de blockBytes, sea cual sea el tamaño del fichero.
+ *
+ * Los errores del origen se lanzan en read() cuando se llega a su posición.
+ */
+class ReadAheadInputStream extends InputStream {
+
+    private static final Object END = new Object();
+
+    private final InputStream source;
+    private final int blockBytes;
+    private final BlockingQueue<Object> queue;
+    private final Thread filler;
+
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean finished;
+
+    ReadAheadInputStream(InputStream source, int blockBytes, int blocks, String name) {
+        this.source = source;
+        this.blockBytes = Math.max(1024, blockBytes);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, blocks));
+        this.filler = new Thread(this::fill, "read-ahead-" + name);
+        this.filler.setDaemon(true);
+        this.filler.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextBlock() ? current[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextBlock()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        filler.interrupt();
+        try {
+            filler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finished = true;
+        source.close();
+    }
+
+    // true si hay bytes pendientes en el bloque actual, esperando al siguiente si hace falta
+    private boolean nextBlock() throws IOException {
+        while (position == current.length) {
+            if (finished) {
+                return false;
+            }
+            Object next;
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura anticipada interrumpida");
+            }
+            if (next == END) {
+                finished = true;
+                return false;
+            }
+            if (next instanceof IOException failure) {
+                finished = true;
+                throw new IOException("Error leyendo por adelantado: " + failure.getMessage(), failure);
+            }
+            current = (byte[]) next;
+            position = 0;
+        }
+        return true;
+    }
+
+    // Hilo de fondo: lee hasta el final del origen o hasta que close() lo interrumpe
+    private void fill() {
+        try {
+            while (true) {
+                byte[] block = new byte[blockBytes];
+                int read = source.readNBytes(block, 0, blockBytes);
+                if (read > 0) {
+                    queue.put(read == blockBytes ? block : Arrays.copyOf(block, read));
+                }
+                if (read < blockBytes) {
+                    queue.put(END);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // close() antes de llegar al final
+        } catch (IOException e) {
+            putQuietly(e);
+        } catch (RuntimeException | Error e) {
+            // Que read() no se quede esperando a un hilo que ya no existe
+            putQuietly(new IOException("Error en la lectura anticipada", e));
+            throw e;
+        }
+    }
+
+    private void putQuietly(Object value) {
+        try {
+            queue.put(value);
+        } catch (InterruptedException ignored) {
+            // close() en curso
+        }
+    }
+}
@@ -1,45 +1,63 @@
 package com.spring.batch.reader;
 
-import org.springframework.batch.infrastructure.item.ItemReader;
+import org.springframework.batch.infrastructure.item.support.AbstractItemCountingItemStreamItemReader;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 
 import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.nio.charset.StandardCharsets;
 
 /**
- * SimpleReader: lee datos desde un archivo CSV.
+ * SimpleReader: lee datos desde un archivo CSV, plano o comprimido en gzip.
  *
  * En Batch 6, ItemReader sigue devolviendo T por read().
  * Cada llamada a read() devuelve un solo elemento.
  *
  * Funcionamiento:
- * 1. Carga todas las líneas del archivo CSV en memoria
- * 2. Mantiene un índice currentIndex
- * 3. Devuelve una línea por read()
- * 4. Retorna null al final indicando que no hay más elementos
+ * 1. open() abre el recurso (por defecto classpath:data/input.csv) a través de
+ *    InflatingBufferedReaderFactory, que detecta y descomprime gzip en streaming
+ * 2. Devuelve una línea por read(), leída del fichero en ese momento: nunca hay más
+ *    que el buffer de lectura en memoria
+ * 3. Retorna null al final indicando que no hay más elementos
+ *
+ * Como ItemStream, el step lo abre y lo cierra, y al reiniciar salta las líneas ya leídas
+ * (read.count).
  */
-public class SimpleReader implements ItemReader<String> {
+public class SimpleReader extends AbstractItemCountingItemStreamItemReader<String> {
 
-    private final List<String> lines;
-    private int currentIndex = 0;
+    private final Resource resource;
+    private final InflatingBufferedReaderFactory readerFactory;
+    private BufferedReader reader;
 
-    public SimpleReader() throws Exception {
-        // Cargar archivo CSV desde recursos
-        var resource = new ClassPathResource("data/input.csv");
-        try (var reader = new BufferedReader(new InputStreamReader(resource.getInputStream()))) {
-            lines = reader.lines().collect(Collectors.toList());
-        }
+    public SimpleReader() {
+        this(new ClassPathResource("data/input.csv"));
+    }
+
+    public SimpleReader(Resource resource) {
+        this(resource, new InflatingBufferedReaderFactory(64 * 1024, 4));
+    }
+
+    public SimpleReader(Resource resource, InflatingBufferedReaderFactory readerFactory) {
+        this.resource = resource;
+        this.readerFactory = readerFactory;
+        setName("simpleReader");
     }
 
     @Override
-    public String read() {
-        if (currentIndex < lines.size()) {
-            return lines.get(currentIndex++);
-        }
-        return null; // fin de archivo, el Step sabe que terminó
+    protected void doOpen() throws Exception {
+        reader = readerFactory.create(resource, StandardCharsets.UTF_8.name());
     }
-}
 
+    @Override
+    protected String doRead() throws Exception {
+        return reader.readLine(); // null al final del fichero: el Step sabe que terminó
+    }
 
+    @Override
+    protected void doClose() throws Exception {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
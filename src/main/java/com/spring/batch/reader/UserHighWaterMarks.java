@@ -0,0 +1,160 @@
+package com.spring.batch.reader;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.listener.JobExecutionListener;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Marcas de agua (high-water marks) para la carga incremental de usuarios (batch.incremental.enabled).
+ *
+ * Para cada fuente (CSV y tabla users) se guarda en batch_high_water_mark el mayor id leído en la
+ * última ejecución completada, y en la siguiente solo se leen usuarios con id mayor. La tabla
+ * users no tiene columna de última modificación, así que la marca es el id: los cambios en filas
+ * ya procesadas no se detectan.
+ *
+ * - La marca solo avanza si el job termina COMPLETED; tras un fallo se vuelve a leer el mismo delta
+ * - Con el parámetro de job fullReload=true se ignoran las marcas y se lee todo; al terminar,
+ *   las marcas quedan en el mayor id leído
+ * - El estado es de la ejecución en curso: se asume un job de usuarios a la vez
+ *
+ * El mayor id leído de cada fuente se guarda además en el ExecutionContext del step que lee
+ * (CompositeUserReader llama a save() en su update() y a restore() en su open()). Así sobrevive a
+ * los reinicios: afterJob toma el máximo de todas las ejecuciones del job instance, también el
+ * de un stepOne COMPLETED en una ejecución anterior que el reinicio ya no vuelve a lanzar, y un
+ * step reiniciado a mitad parte del máximo que tenía en su último commit.
+ */
+@Component
+public class UserHighWaterMarks implements JobExecutionListener {
+
+    public static final String CSV_SOURCE = "users.csv";
+    public static final String DB_SOURCE = "users.table";
+    public static final String FULL_RELOAD_PARAMETER = "fullReload";
+    private static final String OBSERVED_KEY_PREFIX = "highWaterMark.observed.";
+
+    private static final String TABLE = "batch_high_water_mark";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobRepository jobRepository;
+    private final boolean enabled;
+    private final Map<String, Long> lowerBounds = new ConcurrentHashMap<>();
+    private final Map<String, LongAccumulator> observed = new ConcurrentHashMap<>();
+
+    public UserHighWaterMarks(DataSource dataSource,
+                              JobRepository jobRepository,
+                              @Value("${batch.incremental.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jobRepository = jobRepository;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        lowerBounds.clear();
+        observed.clear();
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE
+                + " (source VARCHAR(64) PRIMARY KEY, mark BIGINT NOT NULL, updated_at TIMESTAMP NOT NULL)");
+        if (Boolean.parseBoolean(jobExecution.getJobParameters().getString(FULL_RELOAD_PARAMETER, "false"))) {
+            System.out.println("[Incremental] fullReload: se leen todas las filas");
+            return;
+        }
+        jdbcTemplate.query("SELECT source, mark FROM " + TABLE, rs -> {
+            lowerBounds.put(rs.getString("source"), rs.getLong("mark"));
+        });
+        System.out.println("[Incremental] Marcas de partida: " + lowerBounds);
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        if (!enabled || jobExecution.getStatus() != BatchStatus.COMPLETED) {
+            return;
+        }
+        Map<String, Long> marks = observedMarks(jobExecution);
+        marks.forEach((source, max) -> {
+            long mark = Math.max(max, lowerBounds.getOrDefault(source, Long.MIN_VALUE));
+            jdbcTemplate.update("MERGE INTO " + TABLE + " (source, mark, updated_at) KEY (source) "
+                    + "VALUES (?, ?, CURRENT_TIMESTAMP)", source, mark);
+        });
+        System.out.println("[Incremental] Marcas guardadas: " + marks);
+    }
+
+    /**
+     * Mayor id leído de cada fuente en todo el job instance: lo anotado en esta ejecución y lo
+     * guardado en el ExecutionContext de los steps de esta y de las ejecuciones anteriores.
+     */
+    Map<String, Long> observedMarks(JobExecution jobExecution) {
+        Map<String, Long> marks = new HashMap<>();
+        observed.forEach((source, max) -> marks.merge(source, max.get(), Math::max));
+        List<StepExecution> stepExecutions = new ArrayList<>(jobExecution.getStepExecutions());
+        for (JobExecution previous : jobRepository.getJobExecutions(jobExecution.getJobInstance())) {
+            if (previous.getId() != jobExecution.getId()) {
+                stepExecutions.addAll(previous.getStepExecutions());
+            }
+        }
+        for (StepExecution stepExecution : stepExecutions) {
+            ExecutionContext context = stepExecution.getExecutionContext();
+            for (Map.Entry<String, Object> entry : context.entrySet()) {
+                if (entry.getKey().startsWith(OBSERVED_KEY_PREFIX)) {
+                    marks.merge(entry.getKey().substring(OBSERVED_KEY_PREFIX.length()),
+                            ((Number) entry.getValue()).longValue(), Math::max);
+                }
+            }
+        }
+        return marks;
+    }
+
+    /**
+     * Guarda en el ExecutionContext del step el mayor id leído de cada fuente.
+     */
+    public void save(ExecutionContext executionContext) {
+        observed.forEach((source, max) -> executionContext.putLong(OBSERVED_KEY_PREFIX + source, max.get()));
+    }
+
+    /**
+     * Reinicio de un step: recupera el mayor id que había leído hasta su último commit.
+     */
+    public void restore(ExecutionContext executionContext) {
+        for (Map.Entry<String, Object> entry : executionContext.entrySet()) {
+            if (entry.getKey().startsWith(OBSERVED_KEY_PREFIX)) {
+                observe(entry.getKey().substring(OBSERVED_KEY_PREFIX.length()),
+                        ((Number) entry.getValue()).longValue());
+            }
+        }
+    }
+
+    /**
+     * Solo se leen los ids mayores que este valor (Long.MIN_VALUE si no hay marca o en modo completo).
+     */
+    public long lowerBound(String source) {
+        return lowerBounds.getOrDefault(source, Long.MIN_VALUE);
+    }
+
+    public boolean isNew(String source, Long id) {
+        return id == null || id > lowerBound(source);
+    }
+
+    /**
+     * Registra un id leído; la marca que se guarda es el máximo.
+     */
+    public void observe(String source, Long id) {
+        if (enabled && id != null) {
+            observed.computeIfAbsent(source, key -> new LongAccumulator(Long::max, Long.MIN_VALUE)).accumulate(id);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.spring.batch.reader;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Elimina los usuarios repetidos entre el CSV y la tabla users (mismo id) antes de procesarlos,
+ * para que el writer no llegue a la violación de clave primaria y al camino de skip/rollback.
+ *
+ * batch.reader.dedup.winner decide qué fuente se queda con el id:
+ * - DATABASE: al abrir el reader se cargan los ids de la consulta de jdbcUserReader y se
+ *   descartan los del CSV que ya estén. Vale para cualquier modo del reader y para reinicios
+ * - CSV: se anotan los ids del CSV según se leen y se descartan los de la BD que ya estén.
+ *   Requiere el modo SEQUENTIAL (todo el CSV antes que la BD). Si se reinicia el step a mitad,
+ *   solo se conocen los ids leídos tras el reinicio
+ *
+ * Los ids se guardan en un {@link LongBitmapSet}, sin locks y con memoria proporcional al rango de ids.
+ */
+@Component
+public class UserIdDeduplicator {
+
+    public enum Winner { CSV, DATABASE }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserHighWaterMarks highWaterMarks;
+    private final boolean enabled;
+    private final Winner winner;
+    private final LongBitmapSet ids = new LongBitmapSet();
+    private final LongAdder duplicates = new LongAdder();
+
+    public UserIdDeduplicator(DataSource dataSource,
+                              UserHighWaterMarks highWaterMarks,
+                              @Value("${batch.reader.dedup.enabled:true}") boolean enabled,
+                              @Value("${batch.reader.dedup.winner:DATABASE}") Winner winner,
+                              @Value("${batch.reader.dedup.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.highWaterMarks = highWaterMarks;
+        this.enabled = enabled;
+        this.winner = winner;
+    }
+
+    /**
+     * Comprueba que el orden de lectura del reader permite aplicar la política.
+     */
+    public void checkMode(CompositeUserReader.Mode mode) {
+        if (enabled && winner == Winner.CSV && mode != CompositeUserReader.Mode.SEQUENTIAL) {
+            throw new IllegalStateException("batch.reader.dedup.winner=CSV requiere batch.reader.composite.mode=SEQUENTIAL");
+        }
+    }
+
+    /**
+     * Empieza una lectura nueva: vacía los ids y, si gana la BD, carga los suyos.
+     */
+    public void open() {
+        ids.clear();
+        duplicates.reset();
+        if (!enabled || winner != Winner.DATABASE) {
+            return;
+        }
+        // Mismo filtro que jdbcUserReader, para no descartar usuarios del CSV que la BD no va a devolver
+        jdbcTemplate.query("SELECT id FROM users WHERE active = true AND id > ?", rs -> {
+            ids.add(rs.getLong(1));
+        }, highWaterMarks.lowerBound(UserHighWaterMarks.DB_SOURCE));
+    }
+
+    /**
+     * true si el usuario leído de la fuente se debe procesar.
+     */
+    public boolean accept(String source, Long id) {
+        if (!enabled || id == null) {
+            return true;
+        }
+        String winnerSource = winner == Winner.CSV ? UserHighWaterMarks.CSV_SOURCE : UserHighWaterMarks.DB_SOURCE;
+        if (source.equals(winnerSource)) {
+            if (winner == Winner.CSV) {
+                ids.add(id);
+            }
+            return true;
+        }
+        if (ids.contains(id)) {
+            duplicates.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public long duplicates() {
+        return duplicates.sum();
+    }
+}
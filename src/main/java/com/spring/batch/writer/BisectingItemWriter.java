@@ -0,0 +1,189 @@
+package com.spring.batch.writer;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.SkipListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStream;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamWriter;
+import org.springframework.batch.infrastructure.item.ItemWriter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Writer que, si un chunk falla por un error de datos, lo parte en mitades en lugar de dejar
+ * que el step lo vuelva a escribir item a item.
+ *
+ * Cada intento va en una transacción anidada (savepoint): si falla, solo se deshace ese trozo.
+ * Las mitades que escriben bien quedan escritas y las que fallan se vuelven a partir, hasta
+ * aislar los items erróneos, que van al SkipListener (la dead-letter). Con k items malos en un
+ * chunk de n son unas k·log2(n) escrituras en vez de n transacciones de un item, y el step
+ * nunca ve la excepción ni hace rollback del chunk.
+ *
+ * Solo se parte con los errores que cumplen bisectOn (errores de datos) y mientras la
+ * SkipPolicy lo permita; cualquier otro error se propaga tal cual al step.
+ *
+ * Como el step no ve los items saltados, los cuenta este writer en su StepExecution: la
+ * SkipPolicy recibe los skips del step más los de esta escritura, y cuando la transacción del
+ * chunk hace commit se suman a writeSkipCount y se restan de writeCount (el step cuenta como
+ * escrito el chunk entero). Si la transacción hace rollback no se cuenta nada.
+ */
+public class BisectingItemWriter<T> implements ItemStreamWriter<T>, StepExecutionListener {
+
+    // Lleva por la transacción anidada las excepciones checked del delegado
+    private static final class WriteFailure extends RuntimeException {
+        WriteFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private final ItemWriter<T> delegate;
+    private final TransactionTemplate savepoint;
+    private final SkipPolicy skipPolicy;
+    private final Predicate<Throwable> bisectOn;
+    private final SkipListener<?, T> skipListener;
+    // Skips de las escrituras fuera de un step (benchmarks)
+    private final AtomicLong unscopedSkips = new AtomicLong();
+
+    public BisectingItemWriter(ItemWriter<T> delegate, PlatformTransactionManager transactionManager,
+                               SkipPolicy skipPolicy, Predicate<Throwable> bisectOn,
+                               SkipListener<?, T> skipListener) {
+        this.delegate = delegate;
+        this.savepoint = new TransactionTemplate(transactionManager);
+        this.savepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.skipPolicy = skipPolicy;
+        this.bisectOn = bisectOn;
+        this.skipListener = skipListener;
+    }
+
+    @Override
+    public void write(Chunk<? extends T> chunk) throws Exception {
+        writeSkipping(chunk.getItems());
+    }
+
+    /**
+     * Escribe los items partiendo el lote si hace falta y devuelve los que se han saltado.
+     */
+    public List<T> writeSkipping(List<? extends T> items) throws Exception {
+        StepContext context = StepSynchronizationManager.getContext();
+        StepExecution stepExecution = context != null ? context.getStepExecution() : null;
+        List<T> skipped = new ArrayList<>();
+        writeOrBisect(items, stepExecution, skipped);
+        if (!skipped.isEmpty()) {
+            count(stepExecution, skipped.size());
+        }
+        return skipped;
+    }
+
+    private void writeOrBisect(List<? extends T> items, StepExecution stepExecution, List<T> skipped)
+            throws Exception {
+        try {
+            savepoint.executeWithoutResult(status -> {
+                try {
+                    delegate.write(new Chunk<>(items));
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new WriteFailure(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            Exception failure = e instanceof WriteFailure wrapped ? (Exception) wrapped.getCause() : e;
+            if (!bisectOn.test(failure)) {
+                throw failure;
+            }
+            if (items.size() > 1) {
+                int middle = items.size() / 2;
+                writeOrBisect(items.subList(0, middle), stepExecution, skipped);
+                writeOrBisect(items.subList(middle, items.size()), stepExecution, skipped);
+                return;
+            }
+            long skipCount = stepExecution != null ? stepExecution.getSkipCount() : unscopedSkips.get();
+            if (!skipPolicy.shouldSkip(failure, skipCount + skipped.size())) {
+                throw failure;
+            }
+            skipped.add(items.get(0));
+            skipListener.onSkipInWrite(items.get(0), failure);
+        }
+    }
+
+    // Pasa los skips a la StepExecution cuando la transacción del chunk hace commit
+    private void count(StepExecution stepExecution, int skips) {
+        if (stepExecution == null) {
+            unscopedSkips.addAndGet(skips);
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addSkips(stepExecution, skips);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    addSkips(stepExecution, skips);
+                }
+            }
+        });
+    }
+
+    // Con varios hilos la StepExecution se actualiza a la vez que StepExecution.apply(), que
+    // también sincroniza sobre ella
+    private static void addSkips(StepExecution stepExecution, int skips) {
+        synchronized (stepExecution) {
+            stepExecution.setWriteSkipCount(stepExecution.getWriteSkipCount() + skips);
+            stepExecution.setWriteCount(Math.max(0, stepExecution.getWriteCount() - skips));
+        }
+    }
+
+    // Delegamos el ciclo de vida para que el step siga abriendo y guardando el estado del writer real
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream stream) {
+            stream.open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream stream) {
+            stream.update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (delegate instanceof ItemStream stream) {
+            stream.close();
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (delegate instanceof StepExecutionListener listener) {
+            listener.beforeStep(stepExecution);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (delegate instanceof StepExecutionListener listener) {
+            return listener.afterStep(stepExecution);
+        }
+        return stepExecution.getExitStatus();
+    }
+}
@@ -0,0 +1,160 @@
+package com.spring.batch.writer;
+
+import com.spring.batch.model.User;
+import com.spring.batch.processor.InvalidUserException;
+import com.spring.batch.processor.UserColumns;
+import com.spring.batch.processor.UserProcessingPipeline;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.SkipListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStream;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamWriter;
+import org.springframework.batch.infrastructure.item.ItemWriter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writer que aplica el UserProcessingPipeline sobre el chunk completo antes de escribirlo.
+ *
+ * Se usa en el modo batch.processor.chunk-mode=true: el step no tiene ItemProcessor y cada
+ * etapa del pipeline recorre el chunk entero en un único bucle.
+ *
+ * Los items con datos inválidos (InvalidUserException de la validación) se apartan del chunk
+ * sin fallarlo: si la SkipPolicy lo permite, van a la dead-letter como skips de proceso y el
+ * resto del chunk se escribe. Si no lo permite, la excepción sale al step. Cualquier otra
+ * excepción de una etapa hace que el scan del step fault-tolerant vuelva a escribir item a item.
+ *
+ * Como el step no tiene processor, cuenta como escrito todo el chunk. Cuando la transacción del
+ * chunk hace commit, este writer corrige la StepExecution, como BisectingItemWriter: los items
+ * filtrados pasan a filterCount, los rechazados a processSkipCount, y ambos se restan de
+ * writeCount. Si la transacción hace rollback no se cuenta nada.
+ *
+ * Con batch.processor.columnar=true el chunk se pasa a columnas (UserColumns) antes de las
+ * etapas y se vuelve a convertir en Chunk<User> para el writer real.
+ */
+public class ChunkProcessingUserWriter implements ItemStreamWriter<User>, StepExecutionListener {
+
+    private final UserProcessingPipeline pipeline;
+    private final ItemWriter<User> delegate;
+    private final SkipPolicy skipPolicy;
+    private final SkipListener<User, ?> skipListener;
+    // Skips de las escrituras fuera de un step (benchmarks)
+    private final AtomicLong unscopedSkips = new AtomicLong();
+
+    public ChunkProcessingUserWriter(UserProcessingPipeline pipeline, ItemWriter<User> delegate,
+                                     SkipPolicy skipPolicy, SkipListener<User, ?> skipListener) {
+        this.pipeline = pipeline;
+        this.delegate = delegate;
+        this.skipPolicy = skipPolicy;
+        this.skipListener = skipListener;
+    }
+
+    @Override
+    public void write(Chunk<? extends User> chunk) throws Exception {
+        StepContext context = StepSynchronizationManager.getContext();
+        StepExecution stepExecution = context != null ? context.getStepExecution() : null;
+        long skipCount = stepExecution != null ? stepExecution.getSkipCount() : unscopedSkips.get();
+        List<User> skipped = new ArrayList<>();
+        List<User> items;
+        if (pipeline.isColumnar()) {
+            items = pipeline.processColumns(UserColumns.of(chunk.getItems()),
+                    (user, error) -> skip(user, error, skipCount, skipped));
+        } else {
+            items = new ArrayList<>(chunk.getItems());
+            pipeline.processChunk(items, (user, error) -> skip(user, error, skipCount, skipped));
+        }
+        if (!items.isEmpty()) {
+            delegate.write(new Chunk<>(items));
+        }
+        count(stepExecution, chunk.size() - items.size() - skipped.size(), skipped.size());
+    }
+
+    private void skip(User user, InvalidUserException error, long skipCount, List<User> skipped) {
+        if (!skipPolicy.shouldSkip(error, skipCount + skipped.size())) {
+            throw error;
+        }
+        skipped.add(user);
+        skipListener.onSkipInProcess(user, error);
+    }
+
+    // Pasa los filtrados y los skips a la StepExecution cuando la transacción del chunk hace commit
+    private void count(StepExecution stepExecution, int filtered, int skips) {
+        if (filtered == 0 && skips == 0) {
+            return;
+        }
+        if (stepExecution == null) {
+            unscopedSkips.addAndGet(skips);
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            addCounts(stepExecution, filtered, skips);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    addCounts(stepExecution, filtered, skips);
+                }
+            }
+        });
+    }
+
+    // Con varios hilos la StepExecution se actualiza a la vez que StepExecution.apply(), que
+    // también sincroniza sobre ella
+    private static void addCounts(StepExecution stepExecution, int filtered, int skips) {
+        synchronized (stepExecution) {
+            stepExecution.setFilterCount(stepExecution.getFilterCount() + filtered);
+            stepExecution.setProcessSkipCount(stepExecution.getProcessSkipCount() + skips);
+            stepExecution.setWriteCount(Math.max(0, stepExecution.getWriteCount() - filtered - skips));
+        }
+    }
+
+    // Delegamos el ciclo de vida para que el step siga abriendo y guardando el estado del writer real
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream stream) {
+            stream.open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream stream) {
+            stream.update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (delegate instanceof ItemStream stream) {
+            stream.close();
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (delegate instanceof StepExecutionListener listener) {
+            listener.beforeStep(stepExecution);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (delegate instanceof StepExecutionListener listener) {
+            return listener.afterStep(stepExecution);
+        }
+        return stepExecution.getExitStatus();
+    }
+}
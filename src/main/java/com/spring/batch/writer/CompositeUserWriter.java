@@ -1,32 +1,259 @@
 package com.spring.batch.writer;
 
+import com.spring.batch.config.UserSkipPolicy;
 import com.spring.batch.model.User;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.listener.JobExecutionListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.core.step.skip.SkipPolicy;
 import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStream;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamWriter;
 import org.springframework.batch.infrastructure.item.ItemWriter;
-import org.springframework.batch.infrastructure.item.database.JdbcBatchItemWriter;
-import org.springframework.batch.infrastructure.item.file.FlatFileItemWriter;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Writer compuesto que escribe usuarios en múltiples destinos (archivo y DB)
  * usando Spring Batch 6, que requiere write(Chunk<? extends T>).
+ *
+ * Los destinos se configuran por nombre de bean en batch.writer.delegates.
+ * En modo secuencial se escribe primero en BD y luego en fichero: si la BD rechaza el chunk
+ * el fichero no llega a recibirlo.
+ *
+ * Los errores de datos de la BD se aíslan partiendo el chunk (BisectingItemWriter) solo sobre
+ * los destinos de BD: los items saltados van a la dead-letter y el fichero recibe una sola vez
+ * el resto del chunk, ya sin ellos. Partir el composite entero escribiría en el fichero las
+ * mitades buenas antes de que fallara otra, y el rollback no las deshace.
+ *
+ * Con batch.writer.parallel=true el chunk se envía a todos los destinos a la vez:
+ * - los StagedItemWriter (fichero) preparan su salida en otro hilo
+ * - el resto (BD) se escriben en el hilo del step, porque la transacción del chunk
+ *   está ligada a ese hilo
+ * Cuando todos terminan, la salida preparada se aplica, siempre antes del commit; si la BD ha
+ * saltado items, se vuelve a preparar sin ellos.
+ * Si algún destino falla no se aplica nada, y el rollback de la transacción
+ * deshace la parte de BD, así que el fichero nunca recibe un chunk que la BD haya rechazado.
+ *
+ * La latencia del chunk pasa a ser aproximadamente la del destino más lento en lugar de la suma.
  */
 @Component
-public class CompositeUserWriter implements ItemWriter<User> {
+public class CompositeUserWriter implements ItemStreamWriter<User>, StepExecutionListener, JobExecutionListener,
+        DisposableBean {
+
+    private final List<ItemWriter<User>> delegates = new ArrayList<>();
+    private final List<StagedItemWriter<User>> staged = new ArrayList<>();
+    private final List<ItemWriter<User>> direct = new ArrayList<>();
+    private final BisectingItemWriter<User> bisecting;
+    private final boolean parallel;
+    private final ThreadPoolTaskExecutor executor;
 
-    private final FlatFileItemWriter<User> fileWriter;
-    private final JdbcBatchItemWriter<User> dbWriter;
+    @SuppressWarnings("unchecked")
+    public CompositeUserWriter(BeanFactory beanFactory,
+                               @Value("${batch.writer.delegates:fileInsertUserWriter,dbUpsertUserWriter}") List<String> delegateNames,
+                               @Value("${batch.writer.parallel:false}") boolean parallel,
+                               PlatformTransactionManager transactionManager,
+                               @Qualifier("customSkipPolicy") SkipPolicy skipPolicy,
+                               DeadLetterUserWriter deadLetterWriter) {
+        for (String name : delegateNames) {
+            ItemWriter<User> delegate = beanFactory.getBean(name.trim(), ItemWriter.class);
+            delegates.add(delegate);
+            if (delegate instanceof StagedItemWriter<?> stagedWriter) {
+                staged.add((StagedItemWriter<User>) stagedWriter);
+            } else {
+                direct.add(delegate);
+            }
+        }
+        this.bisecting = new BisectingItemWriter<User>(this::writeDirect, transactionManager, skipPolicy,
+                UserSkipPolicy::isDataError, deadLetterWriter);
+        this.parallel = parallel && !staged.isEmpty();
 
-    public CompositeUserWriter(FlatFileItemWriter<User> fileWriter,
-                               JdbcBatchItemWriter<User> dbWriter) {
-        this.fileWriter = fileWriter;
-        this.dbWriter = dbWriter;
+        if (this.parallel) {
+            // Un hilo por destino preparado; el step puede tener varios chunks a la vez
+            executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(staged.size() * 4);
+            executor.setMaxPoolSize(staged.size() * 4);
+            executor.setThreadNamePrefix("writer-thread-");
+            executor.initialize();
+        } else {
+            executor = null;
+        }
     }
 
     @Override
     public void write(Chunk<? extends User> chunk) throws Exception {
-        // Pasamos directamente el Chunk a cada writer
-        fileWriter.write(chunk); // ahora es correcto
-        dbWriter.write(chunk);   // también correcto
+        if (!parallel) {
+            // Primero la BD y después el fichero: si la BD rechaza el chunk, el fichero no lo recibe
+            Chunk<? extends User> written = withoutSkipped(chunk, bisecting.writeSkipping(chunk.getItems()));
+            for (StagedItemWriter<User> writer : staged) {
+                writer.write(written);
+            }
+            return;
+        }
+
+        List<CompletableFuture<Object>> prepared = stageAsync(chunk);
+
+        Exception failure = null;
+        List<User> skipped = List.of();
+        try {
+            skipped = bisecting.writeSkipping(chunk.getItems()); // en el hilo del step, dentro de su transacción
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        List<Object> outputs = new ArrayList<>(staged.size());
+        for (CompletableFuture<Object> future : prepared) {
+            try {
+                outputs.add(future.join()); // siempre esperamos a todos antes de salir
+            } catch (CompletionException e) {
+                Exception cause = e.getCause() instanceof Exception ex ? ex : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure; // no se aplica nada: el rollback deja ambos destinos sin el chunk
+        }
+
+        if (!skipped.isEmpty()) {
+            // Lo preparado incluye los items que la BD ha saltado: se prepara otra vez sin ellos
+            Chunk<? extends User> written = withoutSkipped(chunk, skipped);
+            outputs.clear();
+            for (StagedItemWriter<User> writer : staged) {
+                outputs.add(writer.stage(written));
+            }
+        }
+        for (int i = 0; i < staged.size(); i++) {
+            staged.get(i).apply(outputs.get(i));
+        }
+    }
+
+    private List<CompletableFuture<Object>> stageAsync(Chunk<? extends User> chunk) {
+        List<CompletableFuture<Object>> prepared = new ArrayList<>(staged.size());
+        for (StagedItemWriter<User> writer : staged) {
+            prepared.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return writer.stage(chunk);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+        return prepared;
+    }
+
+    // Destinos de BD, dentro de la transacción anidada de cada intento de BisectingItemWriter
+    private void writeDirect(Chunk<? extends User> chunk) throws Exception {
+        for (ItemWriter<User> delegate : direct) {
+            delegate.write(chunk);
+        }
+    }
+
+    private static Chunk<? extends User> withoutSkipped(Chunk<? extends User> chunk, List<User> skipped) {
+        if (skipped.isEmpty()) {
+            return chunk;
+        }
+        // Por identidad: el skip es de ese item concreto, no de otro igual
+        Set<User> excluded = Collections.newSetFromMap(new IdentityHashMap<>());
+        excluded.addAll(skipped);
+        List<User> remaining = new ArrayList<>(chunk.size() - skipped.size());
+        for (User user : chunk) {
+            if (!excluded.contains(user)) {
+                remaining.add(user);
+            }
+        }
+        return new Chunk<>(remaining);
+    }
+
+    // El step (y el job) solo registran este writer, así que delegamos el ciclo de vida (stream y listeners)
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof ItemStream stream) {
+                stream.open(executionContext);
+            }
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof ItemStream stream) {
+                stream.update(executionContext);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof ItemStream stream) {
+                stream.close();
+            }
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof StepExecutionListener listener) {
+                listener.beforeStep(stepExecution);
+            }
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof StepExecutionListener listener) {
+                listener.afterStep(stepExecution);
+            }
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof JobExecutionListener listener) {
+                listener.beforeJob(jobExecution);
+            }
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        for (ItemWriter<User> delegate : delegates) {
+            if (delegate instanceof JobExecutionListener listener) {
+                listener.afterJob(jobExecution);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 }
@@ -3,8 +3,10 @@ package com.spring.batch.writer;
 import com.spring.batch.model.User;
 import org.springframework.batch.infrastructure.item.database.JdbcBatchItemWriter;
 import org.springframework.batch.infrastructure.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.sql.DataSource;
 
@@ -22,5 +24,40 @@ public class DbUserWriter {
                 .beanMapped() // usa getters del bean User
                 .build();
     }
+
+    /**
+     * Writer alternativo para processed_users: enlaza los campos de User sin reflexión y
+     * agrupa varias filas por sentencia. En modo MERGE (por defecto) las re-ejecuciones
+     * sobre ids ya cargados actualizan en lugar de fallar.
+     */
+    @Bean
+    public UserUpsertItemWriter dbUpsertUserWriter(DataSource dataSource,
+                                                   PlatformTransactionManager transactionManager,
+                                                   @Value("${batch.writer.upsert.mode:MERGE}") UserUpsertItemWriter.Mode mode,
+                                                   @Value("${batch.writer.upsert.rows-per-statement:100}") int rowsPerStatement) {
+        return new UserUpsertItemWriter(dataSource, transactionManager, mode, rowsPerStatement);
+    }
+
+    /**
+     * Destinos de stepTwo (CSV) y stepThree (tabla users): cada uno en su propia tabla para no
+     * pisar lo que stepOne ha escrito en processed_users.
+     */
+    @Bean
+    public UserUpsertItemWriter csvUpsertUserWriter(DataSource dataSource,
+                                                    PlatformTransactionManager transactionManager,
+                                                    @Value("${batch.writer.step-two.table:processed_users_csv}") String table,
+                                                    @Value("${batch.writer.upsert.mode:MERGE}") UserUpsertItemWriter.Mode mode,
+                                                    @Value("${batch.writer.upsert.rows-per-statement:100}") int rowsPerStatement) {
+        return new UserUpsertItemWriter(dataSource, transactionManager, table, mode, rowsPerStatement);
+    }
+
+    @Bean
+    public UserUpsertItemWriter dbSourceUpsertUserWriter(DataSource dataSource,
+                                                         PlatformTransactionManager transactionManager,
+                                                         @Value("${batch.writer.step-three.table:processed_users_db}") String table,
+                                                         @Value("${batch.writer.upsert.mode:MERGE}") UserUpsertItemWriter.Mode mode,
+                                                         @Value("${batch.writer.upsert.rows-per-statement:100}") int rowsPerStatement) {
+        return new UserUpsertItemWriter(dataSource, transactionManager, table, mode, rowsPerStatement);
+    }
 }
 
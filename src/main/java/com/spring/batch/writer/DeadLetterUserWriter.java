@@ -0,0 +1,171 @@
+package com.spring.batch.writer;
+
+import com.spring.batch.model.User;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.listener.SkipListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.file.FlatFileParseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dead-letter de los items saltados: cada skip (lectura, proceso o escritura) se guarda en la
+ * tabla dead_letter_users con la fase, el step y la causa.
+ *
+ * Los skips se acumulan en una cola y se insertan en un único batch JDBC cada batchSize
+ * registros y al terminar cada step, en una transacción propia (REQUIRES_NEW): el rollback de
+ * un chunk no se lleva la dead-letter, y un step con miles de filas sucias no hace un INSERT
+ * por fila. Si un chunk se repite, sus skips pueden aparecer dos veces.
+ *
+ * El número de registros de cada step queda en su ExecutionContext (deadLetter.count).
+ */
+@Component
+public class DeadLetterUserWriter implements SkipListener<User, User>, StepExecutionListener {
+
+    public static final String COUNT_KEY = "deadLetter.count";
+
+    private static final String TABLE = "dead_letter_users";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private record Entry(User user, String phase, String step, String error, Timestamp createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final int batchSize;
+    private final Queue<Entry> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final Map<String, LongAdder> countsByStep = new ConcurrentHashMap<>();
+    private volatile boolean tableReady;
+
+    public DeadLetterUserWriter(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${batch.dead-letter.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // =================== SKIPS ===================
+
+    @Override
+    public void onSkipInRead(Throwable t) {
+        // Sin item: si es un error de parseo, la línea original va en la causa
+        String error = t instanceof FlatFileParseException parse
+                ? describe(t) + " | línea " + parse.getLineNumber() + ": " + parse.getInput()
+                : describe(t);
+        add(null, "READ", error);
+    }
+
+    @Override
+    public void onSkipInProcess(User item, Throwable t) {
+        add(item, "PROCESS", describe(t));
+    }
+
+    @Override
+    public void onSkipInWrite(User item, Throwable t) {
+        add(item, "WRITE", describe(t));
+    }
+
+    private void add(User user, String phase, String error) {
+        String step = currentStepName();
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+        buffer.add(new Entry(user, phase, step, error, new Timestamp(System.currentTimeMillis())));
+        countsByStep.computeIfAbsent(step, key -> new LongAdder()).increment();
+        if (buffered.incrementAndGet() >= batchSize) {
+            flush();
+        }
+    }
+
+    // =================== STEP ===================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (!tableReady) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE
+                    + " (id BIGINT, name VARCHAR(1000), email VARCHAR(1000), active BOOLEAN, phase VARCHAR(16),"
+                    + " step VARCHAR(64), error VARCHAR(" + MAX_ERROR_LENGTH + "), created_at TIMESTAMP)");
+            tableReady = true;
+        }
+        countsByStep.remove(stepExecution.getStepName());
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        flush();
+        LongAdder count = countsByStep.remove(stepExecution.getStepName());
+        long total = count == null ? 0 : count.sum();
+        stepExecution.getExecutionContext().putLong(COUNT_KEY, total);
+        if (total > 0) {
+            System.out.println("[DeadLetter] " + stepExecution.getStepName() + ": " + total
+                    + " items en " + TABLE);
+        }
+        return stepExecution.getExitStatus();
+    }
+
+    // Vacía la cola en un batch; varios hilos pueden llamarlo a la vez sin repetir registros
+    private void flush() {
+        List<Entry> entries = new ArrayList<>(batchSize);
+        Entry entry;
+        while ((entry = buffer.poll()) != null) {
+            buffered.decrementAndGet();
+            entries.add(entry);
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        newTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                "INSERT INTO " + TABLE + " (id, name, email, active, phase, step, error, created_at)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                entries, entries.size(), (ps, e) -> {
+                    User user = e.user();
+                    if (user == null || user.getId() == null) {
+                        ps.setNull(1, Types.BIGINT);
+                    } else {
+                        ps.setLong(1, user.getId());
+                    }
+                    ps.setString(2, user == null ? null : user.getName());
+                    ps.setString(3, user == null ? null : user.getEmail());
+                    if (user == null) {
+                        ps.setNull(4, Types.BOOLEAN);
+                    } else {
+                        ps.setBoolean(4, user.isActive());
+                    }
+                    ps.setString(5, e.phase());
+                    ps.setString(6, e.step());
+                    ps.setString(7, e.error());
+                    ps.setTimestamp(8, e.createdAt());
+                }));
+    }
+
+    private static String describe(Throwable t) {
+        return t.getClass().getSimpleName() + ": " + t.getMessage();
+    }
+
+    private static String currentStepName() {
+        StepContext context = StepSynchronizationManager.getContext();
+        return context == null ? "unknown" : context.getStepName();
+    }
+}
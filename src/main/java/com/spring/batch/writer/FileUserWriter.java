@@ -1,35 +1,40 @@
 package com.spring.batch.writer;
 
 import com.spring.batch.model.User;
-import org.springframework.batch.infrastructure.item.file.FlatFileItemWriter;
-import org.springframework.batch.infrastructure.item.file.builder.FlatFileItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.FileSystemResource;
+
+import java.nio.file.Path;
 
 /**
  * Writer que escribe los usuarios procesados en un archivo de texto plano.
  *
- * <p>Este Writer genera un archivo con una línea por usuario procesado.
- * Cada línea utiliza el metodo {@code toString()} del modelo {@link User}.
+ * <p>Este Writer genera un archivo con una línea por usuario procesado, con el mismo
+ * formato que el metodo {@code toString()} del modelo {@link User}.
  */
 @Configuration
 public class FileUserWriter {
 
     /**
-     * Crea un FlatFileItemWriter configurado para escribir objetos User en un archivo local.
+     * Crea un UserFileItemWriter configurado para escribir objetos User en un archivo local.
+     *
+     * <p>A diferencia de FlatFileItemWriter, separa la preparación de las líneas de su escritura
+     * en el fichero, lo que permite a CompositeUserWriter prepararlas en paralelo con la BD.
+     * Las líneas se codifican sin String.formatted y se escriben a través de un buffer grande,
+     * opcionalmente comprimidas en gzip.
      *
-     * @return FlatFileItemWriter<User> configurado con recurso, codificación y agregador de líneas
+     * @return UserFileItemWriter configurado con ruta destino, tamaño de buffer y compresión
      */
     @Bean
-    public FlatFileItemWriter<User> fileInsertUserWriter() {
-        return new FlatFileItemWriterBuilder<User>()
-                .name("fileUserWriter") // nombre interno del writer
-                .resource(new FileSystemResource("output/processed_users.txt")) // archivo destino
-                .lineAggregator(User::toString) // cómo convertir cada objeto en línea
-                .encoding("UTF-8") // opcional, pero recomendable
-                .build();
+    public UserFileItemWriter fileInsertUserWriter(
+            @Value("${batch.writer.file.path:output/processed_users.txt}") String path,
+            @Value("${batch.writer.file.buffer-bytes:1048576}") int bufferBytes,
+            @Value("${batch.writer.file.gzip:false}") boolean gzip) {
+        return new UserFileItemWriter(
+                "fileUserWriter",   // nombre interno del writer
+                Path.of(path),      // archivo destino (UTF-8)
+                bufferBytes,        // bytes acumulados antes de escribir en disco
+                gzip);              // un único stream gzip, con SYNC_FLUSH en cada commit
     }
 }
-
-
@@ -0,0 +1,26 @@
+package com.spring.batch.writer;
+
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ItemWriter;
+
+/**
+ * Writer que separa la escritura en dos fases:
+ * - stage(): el trabajo costoso (formatear, codificar...). Debe ser thread-safe y no tocar
+ *   el destino, por lo que se puede ejecutar en otro hilo, fuera de la transacción del step.
+ * - apply(): vuelca el resultado preparado en el destino. Se llama en el hilo del step,
+ *   solo si el resto de destinos del chunk se escribieron sin errores.
+ *
+ * Así CompositeUserWriter puede preparar este destino en paralelo con la BD y, si la BD
+ * falla, descartar lo preparado sin dejar salida que compensar.
+ */
+public interface StagedItemWriter<T> extends ItemWriter<T> {
+
+    Object stage(Chunk<? extends T> chunk) throws Exception;
+
+    void apply(Object staged) throws Exception;
+
+    @Override
+    default void write(Chunk<? extends T> chunk) throws Exception {
+        apply(stage(chunk));
+    }
+}
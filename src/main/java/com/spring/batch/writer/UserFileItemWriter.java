@@ -0,0 +1,309 @@
+package com.spring.batch.writer;
+
+import com.spring.batch.model.User;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemStreamException;
+import org.springframework.batch.infrastructure.item.ItemStreamSupport;
+import org.springframework.batch.infrastructure.item.ItemStreamWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer de usuarios a fichero de texto sobre un FileChannel, una línea por usuario.
+ *
+ * Las líneas se codifican con UserLineEncoder (mismo formato que User.toString, sin
+ * String.formatted) y se acumulan en un buffer de bufferBytes que se vuelca al fichero
+ * cuando se llena y en cada update() del step, es decir, tras cada commit.
+ *
+ * Con gzip=true el fichero es un único miembro gzip: un Deflater por fichero comprime todos
+ * los volcados con el mismo diccionario, y en cada update() se hace un SYNC_FLUSH, que deja lo
+ * comprimido hasta ese commit alineado a byte y completo en el fichero. Al reiniciar tras un
+ * fallo, el miembro a medias se trunca en el último SYNC_FLUSH y se cierra (bloque final vacío
+ * y trailer con el CRC y el tamaño guardados en el ExecutionContext); lo siguiente va en un
+ * miembro nuevo. Un fichero gzip multi-miembro es válido (gunzip, GZIPInputStream).
+ *
+ * Implementa StagedItemWriter: stage() genera los bytes del chunk (se puede ejecutar en
+ * paralelo con la escritura en BD) y apply() los añade al buffer bajo un lock, de modo que
+ * los chunks de distintos hilos no se mezclan.
+ *
+ * Guarda en el ExecutionContext la posición tras el último volcado (y, con gzip, el estado del
+ * miembro abierto); al reiniciar, el fichero se trunca a esa posición para descartar lo escrito
+ * después del último commit.
+ *
+ * Cada step que abre el writer tiene su propio fichero, canal y buffer, localizados por el
+ * StepContext del hilo: si los workers de una partición compartieran el buffer, el update() de
+ * uno volcaría y daría por confirmadas líneas de otro que aún puede hacer rollback. Los workers
+ * (steps "worker:partición") escriben en path con el nombre de la partición como sufijo
+ * (processed_users-stepOneWorker-partition0.txt); el resto de steps, en path. Dos steps que no
+ * son particiones no pueden tener abierto el mismo fichero a la vez.
+ */
+public class UserFileItemWriter extends ItemStreamSupport implements ItemStreamWriter<User>, StagedItemWriter<User> {
+
+    private static final String POSITION_KEY = "position";
+    private static final String GZIP_OPEN_KEY = "gzip.open";
+    private static final String GZIP_CRC_KEY = "gzip.crc";
+    private static final String GZIP_SIZE_KEY = "gzip.size";
+    private static final long UNSCOPED = -1L;
+
+    // Cabecera gzip mínima: deflate, sin nombre ni fecha, SO desconocido
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    // Bloque final vacío (estático), para cerrar un stream deflate que acabó en SYNC_FLUSH
+    private static final byte[] EMPTY_FINAL_BLOCK = {0x03, 0x00};
+
+    // Fichero de un step
+    private static final class Target {
+        final Path path;
+        final FileChannel channel;
+        final ByteBuffer pending;
+        // Miembro gzip abierto (null si no hay ninguno)
+        Deflater deflater;
+        final CRC32 crc = new CRC32();
+        long size;
+        boolean unflushed;
+
+        Target(Path path, FileChannel channel, ByteBuffer pending) {
+            this.path = path;
+            this.channel = channel;
+            this.pending = pending;
+        }
+    }
+
+    private final Path path;
+    private final int bufferBytes;
+    private final boolean gzip;
+    private final Map<Long, Target> targets = new ConcurrentHashMap<>();
+    private final ThreadLocal<UserLineEncoder.Buffer> scratch =
+            ThreadLocal.withInitial(() -> new UserLineEncoder.Buffer(8192));
+    private final ThreadLocal<ByteBuffer> deflated = ThreadLocal.withInitial(() -> ByteBuffer.allocate(64 * 1024));
+
+    public UserFileItemWriter(String name, Path path, int bufferBytes, boolean gzip) {
+        this.path = path;
+        this.bufferBytes = Math.max(8192, bufferBytes);
+        this.gzip = gzip;
+        setName(name);
+    }
+
+    @Override
+    public synchronized void open(ExecutionContext executionContext) throws ItemStreamException {
+        StepContext context = StepSynchronizationManager.getContext();
+        long key = context != null ? context.getStepExecution().getId() : UNSCOPED;
+        Path file = context != null ? pathFor(context.getStepName()) : path;
+        for (Target target : targets.values()) {
+            if (target.path.equals(file)) {
+                throw new IllegalStateException("El fichero " + file + " ya está abierto por otro step;"
+                        + " solo los workers de una partición pueden compartir " + getName());
+            }
+        }
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            // Reinicio: truncamos a la última posición confirmada; ejecución nueva: fichero vacío
+            long position = executionContext.getLong(getExecutionContextKey(POSITION_KEY), 0L);
+            channel.truncate(position);
+            channel.position(position);
+            Target target = new Target(file, channel, ByteBuffer.allocateDirect(bufferBytes));
+            if (gzip && executionContext.containsKey(getExecutionContextKey(GZIP_OPEN_KEY))
+                    && executionContext.getString(getExecutionContextKey(GZIP_OPEN_KEY)).equals("true")) {
+                // El miembro del intento anterior acaba en el último SYNC_FLUSH: se cierra
+                writeFully(target, ByteBuffer.wrap(EMPTY_FINAL_BLOCK));
+                writeTrailer(target, executionContext.getLong(getExecutionContextKey(GZIP_CRC_KEY)),
+                        executionContext.getLong(getExecutionContextKey(GZIP_SIZE_KEY)));
+            }
+            targets.put(key, target);
+        } catch (IOException e) {
+            throw new ItemStreamException("No se pudo abrir el fichero " + file, e);
+        }
+    }
+
+    @Override
+    public Object stage(Chunk<? extends User> chunk) {
+        UserLineEncoder.Buffer buffer = scratch.get();
+        buffer.reset();
+        for (User user : chunk) {
+            UserLineEncoder.encode(user, buffer);
+        }
+        return buffer.toByteArray();
+    }
+
+    @Override
+    public void apply(Object staged) throws IOException {
+        Target target = current();
+        if (target == null) {
+            throw new IllegalStateException("El writer " + getName() + " no está abierto en este step");
+        }
+        byte[] bytes = (byte[]) staged;
+        synchronized (target) {
+            ByteBuffer pending = target.pending;
+            if (bytes.length > pending.remaining()) {
+                flush(target);
+            }
+            if (bytes.length > pending.capacity()) {
+                writeBlock(target, ByteBuffer.wrap(bytes)); // chunk mayor que el buffer: se escribe directamente
+            } else {
+                pending.put(bytes);
+            }
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        Target target = current();
+        if (target == null) {
+            return;
+        }
+        synchronized (target) {
+            try {
+                flush(target);
+                if (gzip) {
+                    syncFlush(target);
+                    executionContext.putString(getExecutionContextKey(GZIP_OPEN_KEY),
+                            String.valueOf(target.deflater != null));
+                    executionContext.putLong(getExecutionContextKey(GZIP_CRC_KEY), target.crc.getValue());
+                    executionContext.putLong(getExecutionContextKey(GZIP_SIZE_KEY), target.size);
+                }
+                executionContext.putLong(getExecutionContextKey(POSITION_KEY), target.channel.position());
+            } catch (IOException e) {
+                throw new ItemStreamException("No se pudo volcar el fichero " + target.path, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws ItemStreamException {
+        StepContext context = StepSynchronizationManager.getContext();
+        Target target = targets.remove(context != null ? context.getStepExecution().getId() : UNSCOPED);
+        if (target == null) {
+            return;
+        }
+        synchronized (target) {
+            try {
+                flush(target);
+                if (gzip) {
+                    finishMember(target);
+                }
+                target.channel.force(false);
+                target.channel.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("No se pudo cerrar el fichero " + target.path, e);
+            } finally {
+                if (target.deflater != null) {
+                    target.deflater.end();
+                }
+            }
+        }
+    }
+
+    // Fichero del step: los workers de una partición ("worker:partición") llevan sufijo
+    private Path pathFor(String stepName) {
+        int separator = stepName.indexOf(':');
+        if (separator < 0) {
+            return path;
+        }
+        String file = path.getFileName().toString();
+        int dot = file.indexOf('.');
+        String base = dot < 0 ? file : file.substring(0, dot);
+        String extension = dot < 0 ? "" : file.substring(dot);
+        String suffix = stepName.replaceAll("[^A-Za-z0-9_.-]", "-");
+        return path.resolveSibling(base + "-" + suffix + extension);
+    }
+
+    // Fichero del step que se ejecuta en este hilo; fuera de un step (benchmarks), el abierto sin step
+    private Target current() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context != null) {
+            return targets.get(context.getStepExecution().getId());
+        }
+        return targets.get(UNSCOPED);
+    }
+
+    private void flush(Target target) throws IOException {
+        ByteBuffer pending = target.pending;
+        if (pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        writeBlock(target, pending);
+        pending.clear();
+    }
+
+    private void writeBlock(Target target, ByteBuffer block) throws IOException {
+        if (!gzip) {
+            writeFully(target, block);
+            return;
+        }
+        if (target.deflater == null) {
+            // Primer volcado del miembro
+            writeFully(target, ByteBuffer.wrap(GZIP_HEADER));
+            target.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            target.crc.reset();
+            target.size = 0;
+        }
+        target.crc.update(block.duplicate());
+        target.size += block.remaining();
+        target.deflater.setInput(block);
+        while (!target.deflater.needsInput()) {
+            deflate(target, Deflater.NO_FLUSH);
+        }
+        target.unflushed = true;
+    }
+
+    // Vacía el Deflater hasta un límite de byte: lo confirmado queda entero en el fichero
+    private void syncFlush(Target target) throws IOException {
+        if (target.deflater == null || !target.unflushed) {
+            return;
+        }
+        int written;
+        do {
+            written = deflate(target, Deflater.SYNC_FLUSH); // buffer lleno: puede quedar salida pendiente
+        } while (written == deflated.get().capacity());
+        target.unflushed = false;
+    }
+
+    private void finishMember(Target target) throws IOException {
+        if (target.deflater == null) {
+            return;
+        }
+        target.deflater.finish();
+        while (!target.deflater.finished()) {
+            deflate(target, Deflater.NO_FLUSH);
+        }
+        writeTrailer(target, target.crc.getValue(), target.size);
+    }
+
+    private int deflate(Target target, int flush) throws IOException {
+        ByteBuffer out = deflated.get();
+        out.clear();
+        int bytes = target.deflater.deflate(out, flush);
+        out.flip();
+        writeFully(target, out);
+        return bytes;
+    }
+
+    // Trailer gzip: CRC32 y tamaño sin comprimir módulo 2^32, en little endian
+    private static void writeTrailer(Target target, long crc, long size) throws IOException {
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc).putInt((int) size).flip();
+        writeFully(target, trailer);
+    }
+
+    private static void writeFully(Target target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.spring.batch.writer;
+
+import com.spring.batch.model.User;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codificador de líneas de usuario directamente a bytes UTF-8.
+ *
+ * Produce exactamente el mismo texto que {@link User#toString()}:
+ * {@code User{id=1, name='JOHN', email='john@mail.com', active=true}}
+ * pero sin String.formatted: los fragmentos fijos están precodificados como bytes,
+ * los números se escriben dígito a dígito y los textos ASCII se copian carácter a carácter.
+ * Solo los textos con caracteres no ASCII pasan por String.getBytes.
+ */
+public final class UserLineEncoder {
+
+    private static final byte[] PREFIX = ascii("User{id=");
+    private static final byte[] NAME = ascii(", name='");
+    private static final byte[] EMAIL = ascii("', email='");
+    private static final byte[] ACTIVE = ascii("', active=");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] NULL = ascii("null");
+    private static final byte SUFFIX = '}';
+    private static final byte NEW_LINE = '\n';
+
+    private UserLineEncoder() {
+    }
+
+    /**
+     * Añade la línea del usuario (con salto de línea) al buffer.
+     */
+    public static void encode(User user, Buffer out) {
+        out.append(PREFIX);
+        if (user.getId() == null) {
+            out.append(NULL);
+        } else {
+            out.appendLong(user.getId());
+        }
+        out.append(NAME);
+        out.appendString(user.getName());
+        out.append(EMAIL);
+        out.appendString(user.getEmail());
+        out.append(ACTIVE);
+        out.append(user.isActive() ? TRUE : FALSE);
+        out.append(SUFFIX);
+        out.append(NEW_LINE);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Buffer de bytes ampliable y reutilizable (no thread-safe: uno por hilo).
+     */
+    public static final class Buffer {
+
+        private byte[] bytes;
+        private int length;
+
+        public Buffer(int initialCapacity) {
+            bytes = new byte[Math.max(64, initialCapacity)];
+        }
+
+        public void reset() {
+            length = 0;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        void append(byte value) {
+            ensureCapacity(1);
+            bytes[length++] = value;
+        }
+
+        void append(byte[] value) {
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+        }
+
+        void appendLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                append(ascii(Long.toString(value)));
+                return;
+            }
+            ensureCapacity(20);
+            if (value < 0) {
+                bytes[length++] = '-';
+                value = -value;
+            }
+            int start = length;
+            do {
+                bytes[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            // Los dígitos se han escrito al revés
+            for (int i = start, j = length - 1; i < j; i++, j--) {
+                byte tmp = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = tmp;
+            }
+        }
+
+        void appendString(String value) {
+            if (value == null) {
+                append(NULL);
+                return;
+            }
+            int size = value.length();
+            ensureCapacity(size);
+            int start = length;
+            for (int i = 0; i < size; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    // Texto no ASCII: deshacemos lo copiado y usamos el codificador UTF-8 del JDK
+                    length = start;
+                    append(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                bytes[length++] = (byte) c;
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.spring.batch.writer;
+
+import com.spring.batch.model.User;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.listener.JobExecutionListener;
+import org.springframework.batch.core.listener.StepExecutionListener;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.batch.infrastructure.item.ItemWriter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Writer de alto rendimiento para processed_users (o para la tabla de destino que se indique).
+ *
+ * Enlaza los campos de User directamente en el PreparedStatement (sin BeanPropertySqlParameterSource)
+ * y agrupa rowsPerStatement filas en cada sentencia con VALUES (...), (...), ...
+ * Los grupos completos de un chunk se envían en un único batch JDBC.
+ *
+ * Modos:
+ * - INSERT: INSERT multi-fila; falla si el id ya existe (como el writer original)
+ * - MERGE: MERGE INTO ... KEY (id) multi-fila; repetir una ejecución es idempotente
+ * - STAGING: recarga completa. Se escribe en <tabla>_staging y, al terminar el job
+ *   con éxito, su contenido sustituye al de la tabla en una sola transacción. La tabla staging
+ *   es del job, no de cada step: la preparan beforeJob/afterJob, así que varios steps del mismo
+ *   job (particiones de distintos managers, steps en paralelo) cargan en ella y la sustitución
+ *   se hace una sola vez. El writer tiene que estar registrado como listener del job; si no,
+ *   beforeStep falla
+ *
+ * Las tablas distintas de processed_users se crean, si no existen, con el mismo esquema.
+ */
+public class UserUpsertItemWriter implements ItemWriter<User>, StepExecutionListener, JobExecutionListener {
+
+    public enum Mode { INSERT, MERGE, STAGING }
+
+    public static final String DEFAULT_TABLE = "processed_users";
+
+    private static final String COLUMNS = " (id, name, email, active)";
+    private static final String ROW = "(?, ?, ?, ?)";
+
+    private final String table;
+    private final String stagingTable;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Mode mode;
+    private final int rowsPerStatement;
+    private final String fullStatement;
+
+    private volatile boolean tableReady;
+    // Ejecución del job que está cargando la tabla staging (modo STAGING)
+    private Long stagingJob;
+
+    public UserUpsertItemWriter(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                Mode mode, int rowsPerStatement) {
+        this(dataSource, transactionManager, DEFAULT_TABLE, mode, rowsPerStatement);
+    }
+
+    public UserUpsertItemWriter(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                String table, Mode mode, int rowsPerStatement) {
+        this.table = table;
+        this.stagingTable = table + "_staging";
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.mode = mode;
+        this.rowsPerStatement = Math.max(1, rowsPerStatement);
+        this.fullStatement = statement(this.rowsPerStatement);
+        this.tableReady = DEFAULT_TABLE.equals(table);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    @Override
+    public void write(Chunk<? extends User> chunk) {
+        List<? extends User> items = chunk.getItems();
+        int fullGroups = items.size() / rowsPerStatement;
+        int rest = items.size() % rowsPerStatement;
+
+        if (fullGroups > 0) {
+            jdbcTemplate.batchUpdate(fullStatement, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int group) throws SQLException {
+                    bind(ps, items, group * rowsPerStatement, rowsPerStatement);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return fullGroups;
+                }
+            });
+        }
+        if (rest > 0) {
+            jdbcTemplate.update(statement(rest), ps -> bind(ps, items, fullGroups * rowsPerStatement, rest));
+        }
+    }
+
+    // =================== STAGING ===================
+
+    @Override
+    public synchronized void beforeJob(JobExecution jobExecution) {
+        if (mode != Mode.STAGING) {
+            return;
+        }
+        if (stagingJob != null) {
+            throw new IllegalStateException("STAGING: " + table + " ya se está cargando en la ejecución "
+                    + stagingJob + "; dos jobs no pueden compartir " + stagingTable);
+        }
+        createTable();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + stagingTable
+                + " AS SELECT * FROM " + table + " WITH NO DATA");
+        ExecutionContext context = jobExecution.getExecutionContext();
+        String preparedKey = stagingTable + ".prepared";
+        if (!context.containsKey(preparedKey)) {
+            // Primera ejecución; al reiniciar se conserva lo que cargaron los steps ya completados
+            jdbcTemplate.execute("TRUNCATE TABLE " + stagingTable);
+            context.putString(preparedKey, "true");
+        }
+        stagingJob = jobExecution.getId();
+    }
+
+    @Override
+    public synchronized void afterJob(JobExecution jobExecution) {
+        if (mode != Mode.STAGING || stagingJob == null || stagingJob != jobExecution.getId()) {
+            return;
+        }
+        stagingJob = null;
+        if (jobExecution.getStatus() != BatchStatus.COMPLETED) {
+            return; // la tabla staging se queda como está para el reinicio
+        }
+        // Sustitución atómica: quien lea la tabla ve la carga anterior o la nueva
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM " + table);
+            jdbcTemplate.update("INSERT INTO " + table + COLUMNS + " SELECT id, name, email, active FROM " + stagingTable);
+        });
+        jdbcTemplate.execute("TRUNCATE TABLE " + stagingTable);
+    }
+
+    @Override
+    public synchronized void beforeStep(StepExecution stepExecution) {
+        createTable();
+        if (mode == Mode.STAGING && (stagingJob == null || stagingJob != stepExecution.getJobExecutionId())) {
+            // Sin beforeJob nadie prepara ni sustituye la tabla staging
+            throw new IllegalStateException("STAGING: el writer de " + table
+                    + " tiene que estar registrado como listener del job " + stepExecution.getJobExecution()
+                    .getJobInstance().getJobName() + " (step " + stepExecution.getStepName() + ")");
+        }
+    }
+
+    private void createTable() {
+        if (!tableReady) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table
+                    + " (id BIGINT PRIMARY KEY, name VARCHAR(100), email VARCHAR(150), active BOOLEAN)");
+            tableReady = true;
+        }
+    }
+
+    private String statement(int rows) {
+        StringBuilder sql = new StringBuilder(64 + rows * (ROW.length() + 2));
+        switch (mode) {
+            case MERGE -> sql.append("MERGE INTO ").append(table).append(COLUMNS).append(" KEY (id) VALUES ");
+            case STAGING -> sql.append("INSERT INTO ").append(stagingTable).append(COLUMNS).append(" VALUES ");
+            default -> sql.append("INSERT INTO ").append(table).append(COLUMNS).append(" VALUES ");
+        }
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? ROW : ", " + ROW);
+        }
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement ps, List<? extends User> items, int from, int rows) throws SQLException {
+        int index = 1;
+        for (int i = from; i < from + rows; i++) {
+            User user = items.get(i);
+            if (user.getId() == null) {
+                ps.setNull(index++, Types.BIGINT);
+            } else {
+                ps.setLong(index++, user.getId());
+            }
+            ps.setString(index++, user.getName());
+            ps.setString(index++, user.getEmail());
+            ps.setBoolean(index++, user.isActive());
+        }
+    }
+}
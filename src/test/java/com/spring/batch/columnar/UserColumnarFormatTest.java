@@ -0,0 +1,298 @@
+package com.spring.batch.columnar;
+
+import com.spring.batch.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.infrastructure.item.Chunk;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserColumnarFormatTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripKeepsEveryColumn() throws Exception {
+        List<User> users = List.of(
+                new User(1L, "Ana", "ana@example.com", true),
+                new User(null, "Sin id", "sinid@example.com", false),
+                new User(-7L, null, null, true),
+                new User(Long.MAX_VALUE, "Ñandú", "nandu@ejemplo.es", false),
+                new User(Long.MIN_VALUE, "", "sin-arroba", true),
+                new User(3L, "Luis", "luis@example.com", false),
+                new User(2L, "Eva", "eva@ejemplo.es", true));
+        Path file = dir.resolve("users.ucol");
+
+        ColumnarUserItemWriter writer = new ColumnarUserItemWriter("writer", file, 3);
+        ExecutionContext context = new ExecutionContext();
+        writer.open(context);
+        for (int i = 0; i < users.size(); i += 2) {
+            writer.write(new Chunk<>(users.subList(i, Math.min(i + 2, users.size()))));
+            writer.update(context);
+        }
+        writer.close();
+
+        assertEquals(asStrings(users), asStrings(readAll(file)));
+    }
+
+    @Test
+    void rowGroupsDoNotDependOnTheChunkSize() throws Exception {
+        Path file = dir.resolve("users.ucol");
+        ColumnarUserItemWriter writer = new ColumnarUserItemWriter("writer", file, 5);
+        ExecutionContext context = new ExecutionContext();
+        writer.open(context);
+        for (long id = 1; id <= 12; id += 2) {
+            writer.write(new Chunk<>(user(id), user(id + 1)));
+            writer.update(context);
+        }
+        writer.close();
+
+        List<Integer> rows = new ArrayList<>();
+        for (UserColumnarFormat.RowGroup group : footer(file)) {
+            rows.add(group.rows());
+        }
+        assertEquals(List.of(5, 5, 2), rows);
+        assertEquals(12, readAll(file).size());
+    }
+
+    @Test
+    void restartRecoversRowsOfTheOpenGroup() throws Exception {
+        Path file = dir.resolve("users.ucol");
+        ExecutionContext context = new ExecutionContext();
+
+        ColumnarUserItemWriter first = new ColumnarUserItemWriter("writer", file, 3);
+        first.open(context);
+        first.write(new Chunk<>(user(1), user(2)));
+        first.update(context);
+        first.write(new Chunk<>(user(3), user(4)));
+        first.update(context);
+        // Chunk sin commit: el step falla antes del siguiente update()
+        first.write(new Chunk<>(user(5), user(6)));
+        first.close();
+
+        ColumnarUserItemWriter second = new ColumnarUserItemWriter("writer", file, 3);
+        second.open(context);
+        second.write(new Chunk<>(user(7), user(8)));
+        second.update(context);
+        second.close();
+
+        List<Long> ids = new ArrayList<>();
+        for (User user : readAll(file)) {
+            ids.add(user.getId());
+        }
+        assertEquals(List.of(1L, 2L, 3L, 4L, 7L, 8L), ids);
+        assertEquals(2, footer(file).size());
+    }
+
+    @Test
+    void openRowsRoundTrip() {
+        List<User> users = List.of(
+                new User(null, null, null, false),
+                new User(Long.MIN_VALUE, "Ana", "ana@example.com", true),
+                new User(42L, "Ñandú", "sin-arroba", false));
+        UserColumnarFormat.Sink sink = new UserColumnarFormat.Sink();
+        UserColumnarFormat.writeOpenRows(sink, users, 0, users.size());
+
+        List<User> read = new ArrayList<>();
+        UserColumnarFormat.readOpenRows(sink.toByteBuffer(), read);
+
+        assertEquals(asStrings(users), asStrings(read));
+    }
+
+    @Test
+    void varLongAndZigZagRoundTrip() {
+        long[] values = {0, 1, -1, 63, -64, 64, 127, 128, Integer.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        UserColumnarFormat.Sink sink = new UserColumnarFormat.Sink();
+        for (long value : values) {
+            sink.writeZigZag(value);
+            sink.writeVarLong(value);
+        }
+        ByteBuffer in = sink.toByteBuffer();
+        for (long value : values) {
+            assertEquals(value, UserColumnarFormat.readZigZag(in));
+            assertEquals(value, UserColumnarFormat.readVarLong(in));
+        }
+        assertEquals(0, in.remaining());
+    }
+
+    @Test
+    void rowGroupRangeChecks() {
+        UserColumnarFormat.RowGroup group = new UserColumnarFormat.RowGroup(0, 0, 10, 11, 20, 0);
+        assertTrue(group.overlaps(null, null));
+        assertTrue(group.overlaps(20L, null));
+        assertTrue(group.overlaps(null, 11L));
+        assertFalse(group.overlaps(21L, 30L));
+        assertFalse(group.overlaps(1L, 10L));
+        assertTrue(group.within(11L, 20L));
+        assertTrue(group.within(null, 20L));
+        assertFalse(group.within(12L, null));
+
+        UserColumnarFormat.RowGroup withNulls = new UserColumnarFormat.RowGroup(0, 0, 10, 11, 20, 1);
+        assertTrue(withNulls.overlaps(1L, 100L));
+        assertFalse(withNulls.within(1L, 100L));
+        assertTrue(withNulls.within(null, null));
+
+        UserColumnarFormat.RowGroup onlyNulls = new UserColumnarFormat.RowGroup(0, 0, 3, Long.MAX_VALUE, Long.MIN_VALUE, 3);
+        assertFalse(onlyNulls.overlaps(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertTrue(onlyNulls.overlaps(null, null));
+    }
+
+    @Test
+    void rangedReadDoesNotReadGroupsOutsideTheRange() throws Exception {
+        Path file = writeIds(dir.resolve("users.ucol"), 1, 100, 10);
+        // Grupos [1-10] y [91-100]: si el reader los leyera, fallaría al decodificarlos
+        List<UserColumnarFormat.RowGroup> groups = footer(file);
+        corrupt(file, groups.get(0));
+        corrupt(file, groups.get(9));
+
+        assertEquals(range(25, 54), ids(read(new ColumnarUserItemReader("reader", file, 25L, 54L),
+                new ExecutionContext(), Integer.MAX_VALUE)));
+        assertEquals(range(11, 90), ids(read(new ColumnarUserItemReader("reader", file, 11L, 90L),
+                new ExecutionContext(), Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void readerRestartContinuesAfterTheLastCommittedItem() throws Exception {
+        Path file = writeIds(dir.resolve("users.ucol"), 1, 100, 10);
+        ExecutionContext context = new ExecutionContext();
+
+        List<User> first = read(new ColumnarUserItemReader("reader", file, null, null), context, 37);
+        List<User> rest = read(new ColumnarUserItemReader("reader", file, null, null), context, Integer.MAX_VALUE);
+
+        assertEquals(range(1, 37), ids(first));
+        assertEquals(range(38, 100), ids(rest));
+    }
+
+    @Test
+    void rangedRestartSkipsWholeGroupsWithoutDecodingThem() throws Exception {
+        Path file = writeIds(dir.resolve("users.ucol"), 1, 100, 10);
+        ExecutionContext context = new ExecutionContext();
+
+        List<User> first = read(new ColumnarUserItemReader("reader", file, 11L, 95L), context, 30);
+        // Los grupos [11-20], [21-30] y [31-40] ya leídos se saltan contando sus filas
+        List<UserColumnarFormat.RowGroup> groups = footer(file);
+        corrupt(file, groups.get(1));
+        corrupt(file, groups.get(2));
+        corrupt(file, groups.get(3));
+        List<User> rest = read(new ColumnarUserItemReader("reader", file, 11L, 95L), context, Integer.MAX_VALUE);
+
+        assertEquals(range(11, 40), ids(first));
+        assertEquals(range(41, 95), ids(rest));
+    }
+
+    @Test
+    void rangedRestartInsideAPartialGroup() throws Exception {
+        Path file = writeIds(dir.resolve("users.ucol"), 1, 100, 10);
+        ExecutionContext context = new ExecutionContext();
+
+        List<User> first = read(new ColumnarUserItemReader("reader", file, 15L, 64L), context, 12);
+        List<User> rest = read(new ColumnarUserItemReader("reader", file, 15L, 64L), context, Integer.MAX_VALUE);
+
+        assertEquals(range(15, 26), ids(first));
+        assertEquals(range(27, 64), ids(rest));
+    }
+
+    private Path writeIds(Path file, long from, long to, int rowGroupSize) throws Exception {
+        ColumnarUserItemWriter writer = new ColumnarUserItemWriter("writer", file, rowGroupSize);
+        ExecutionContext context = new ExecutionContext();
+        writer.open(context);
+        List<User> chunk = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            chunk.add(user(id));
+            if (chunk.size() == rowGroupSize || id == to) {
+                writer.write(new Chunk<>(chunk));
+                writer.update(context);
+                chunk = new ArrayList<>();
+            }
+        }
+        writer.close();
+        return file;
+    }
+
+    // Lee como mucho limit usuarios y guarda la posición en context, como un step
+    private static List<User> read(ColumnarUserItemReader reader, ExecutionContext context, int limit)
+            throws Exception {
+        reader.open(context);
+        List<User> users = new ArrayList<>();
+        User user;
+        while (users.size() < limit && (user = reader.read()) != null) {
+            users.add(user);
+        }
+        reader.update(context);
+        reader.close();
+        return users;
+    }
+
+    // Sobrescribe el cuerpo del grupo con bytes que no se pueden decodificar
+    private static void corrupt(Path file, UserColumnarFormat.RowGroup group) throws Exception {
+        byte[] garbage = new byte[group.length()];
+        Arrays.fill(garbage, (byte) 0xFF);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(garbage), group.offset() + Integer.BYTES);
+        }
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(List<User> users) {
+        List<Long> ids = new ArrayList<>();
+        for (User user : users) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    private static User user(long id) {
+        return new User(id, "user" + id, "user" + id + "@example.com", id % 2 == 0);
+    }
+
+    private static List<User> readAll(Path file) throws Exception {
+        ColumnarUserItemReader reader = new ColumnarUserItemReader("reader", file, null, null);
+        reader.open(new ExecutionContext());
+        List<User> users = new ArrayList<>();
+        for (User user = reader.read(); user != null; user = reader.read()) {
+            users.add(user);
+        }
+        reader.close();
+        return users;
+    }
+
+    // Índice de row groups del footer
+    private static List<UserColumnarFormat.RowGroup> footer(Path file) throws Exception {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int footerLength = bytes.getInt(bytes.limit() - UserColumnarFormat.TAIL_BYTES);
+        bytes.position(bytes.limit() - UserColumnarFormat.TAIL_BYTES - footerLength);
+        List<UserColumnarFormat.RowGroup> groups = new ArrayList<>();
+        for (int i = UserColumnarFormat.readVarInt(bytes); i > 0; i--) {
+            groups.add(UserColumnarFormat.readRowGroup(bytes));
+        }
+        return groups;
+    }
+
+    private static List<String> asStrings(List<User> users) {
+        List<String> strings = new ArrayList<>();
+        for (User user : users) {
+            strings.add(String.valueOf(user));
+        }
+        return strings;
+    }
+}
@@ -0,0 +1,116 @@
+package com.spring.batch.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongBitmapSetTest {
+
+    private static final long PAGE = 1L << 16;
+
+    @Test
+    void addReturnsFalseForRepeatedIds() {
+        LongBitmapSet set = new LongBitmapSet();
+
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(41));
+        assertFalse(set.contains(43));
+    }
+
+    @Test
+    void idsAroundPageAndWordBoundaries() {
+        LongBitmapSet set = new LongBitmapSet();
+        long[] ids = {0, 63, 64, PAGE - 1, PAGE, PAGE + 1, 2 * PAGE - 1, 5 * PAGE + 64, Integer.MAX_VALUE};
+        for (long id : ids) {
+            assertTrue(set.add(id), "id " + id);
+        }
+        for (long id : ids) {
+            assertTrue(set.contains(id), "id " + id);
+            assertFalse(set.add(id), "id " + id);
+        }
+        // Mismos bits bajos en otra página, y páginas sin reservar
+        assertFalse(set.contains(2 * PAGE));
+        assertFalse(set.contains(3 * PAGE + 63));
+        assertFalse(set.contains(Integer.MAX_VALUE - 1L));
+    }
+
+    @Test
+    void idsOutsideThePagedRangeGoToTheOverflowSet() {
+        LongBitmapSet set = new LongBitmapSet();
+        long[] ids = {-1, Long.MIN_VALUE, Integer.MAX_VALUE + 1L, 1L << 40, Long.MAX_VALUE};
+        for (long id : ids) {
+            assertTrue(set.add(id), "id " + id);
+            assertFalse(set.add(id), "id " + id);
+        }
+        for (long id : ids) {
+            assertTrue(set.contains(id), "id " + id);
+        }
+        // Los bits bajos coinciden con ids paginados que no se han añadido
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(Integer.MAX_VALUE));
+        assertFalse(set.contains(-2));
+        assertFalse(set.contains((1L << 40) + PAGE));
+    }
+
+    @Test
+    void clearEmptiesPagesAndOverflow() {
+        LongBitmapSet set = new LongBitmapSet();
+        set.add(7);
+        set.add(-7);
+        set.clear();
+
+        assertFalse(set.contains(7));
+        assertFalse(set.contains(-7));
+        assertTrue(set.add(7));
+    }
+
+    @Test
+    void concurrentAddsAcceptEachIdOnce() throws Exception {
+        int threads = 8;
+        long ids = 4 * PAGE;
+        LongBitmapSet set = new LongBitmapSet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // Todos los hilos añaden los mismos ids, incluidos algunos de overflow
+                Callable<Long> task = () -> {
+                    start.await();
+                    long added = 0;
+                    for (long id = -100; id < ids; id++) {
+                        if (set.add(id)) {
+                            added++;
+                        }
+                    }
+                    return added;
+                };
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+            long added = 0;
+            for (Future<Long> result : results) {
+                added += result.get();
+            }
+
+            assertEquals(ids + 100, added);
+            for (long id = -100; id < ids; id++) {
+                assertTrue(set.contains(id), "id " + id);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.spring.batch.reader;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.job.JobExecution;
+import org.springframework.batch.core.job.JobInstance;
+import org.springframework.batch.core.job.parameters.JobParameters;
+import org.springframework.batch.core.repository.support.ResourcelessJobRepository;
+import org.springframework.batch.core.step.StepExecution;
+import org.springframework.batch.infrastructure.item.ExecutionContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Marcas tras reiniciar un job: no se llama a beforeJob/afterJob (necesitan la tabla de marcas),
+ * sino a observedMarks, que es lo que afterJob guarda.
+ */
+class UserHighWaterMarksTest {
+
+    private static final String CSV = UserHighWaterMarks.CSV_SOURCE;
+    private static final String DB = UserHighWaterMarks.DB_SOURCE;
+
+    private final JobInstance jobInstance = new JobInstance(1L, "advancedJob");
+    private final List<JobExecution> executions = new ArrayList<>();
+
+    @Test
+    void restartKeepsTheMarksOfAStepCompletedInAnEarlierExecution() {
+        // Primera ejecución: stepOne termina, stepTwo falla
+        UserHighWaterMarks first = marks();
+        JobExecution failed = execution(1L);
+        StepExecution stepOne = step(1L, "stepOne", failed, BatchStatus.COMPLETED);
+        first.observe(CSV, 120L);
+        first.observe(DB, 300L);
+        first.observe(CSV, 80L);
+        first.save(stepOne.getExecutionContext());
+        step(2L, "stepTwo", failed, BatchStatus.FAILED);
+
+        // Reinicio: memoria vacía y stepOne no se vuelve a ejecutar
+        UserHighWaterMarks restarted = marks();
+        JobExecution completed = execution(2L);
+        step(3L, "stepTwo", completed, BatchStatus.COMPLETED);
+
+        assertEquals(Map.of(CSV, 120L, DB, 300L), restarted.observedMarks(completed));
+    }
+
+    @Test
+    void stepRestartedMidwayStartsFromItsLastCommit() {
+        UserHighWaterMarks first = marks();
+        JobExecution failed = execution(1L);
+        StepExecution stepOne = step(1L, "stepOne", failed, BatchStatus.FAILED);
+        first.observe(CSV, 500L);
+        first.observe(DB, 40L);
+        first.save(stepOne.getExecutionContext());
+
+        // El reinicio de stepOne abre el reader con el ExecutionContext del intento fallido
+        UserHighWaterMarks restarted = marks();
+        JobExecution completed = execution(2L);
+        StepExecution resumed = step(2L, "stepOne", completed, BatchStatus.COMPLETED);
+        resumed.setExecutionContext(new ExecutionContext(stepOne.getExecutionContext()));
+        restarted.restore(resumed.getExecutionContext());
+        restarted.observe(CSV, 450L);
+        restarted.observe(DB, 90L);
+        restarted.save(resumed.getExecutionContext());
+
+        assertEquals(500L, resumed.getExecutionContext().getLong("highWaterMark.observed." + CSV));
+        assertEquals(Map.of(CSV, 500L, DB, 90L), restarted.observedMarks(completed));
+    }
+
+    @Test
+    void disabledModeObservesNothing() {
+        UserHighWaterMarks marks = new UserHighWaterMarks(new DriverManagerDataSource("jdbc:h2:mem:marks"),
+                new InstanceRepository(), false);
+        ExecutionContext context = new ExecutionContext();
+        marks.observe(CSV, 10L);
+        marks.save(context);
+
+        assertEquals(0, context.size());
+    }
+
+    private UserHighWaterMarks marks() {
+        return new UserHighWaterMarks(new DriverManagerDataSource("jdbc:h2:mem:marks"), new InstanceRepository(), true);
+    }
+
+    private JobExecution execution(long id) {
+        JobExecution execution = new JobExecution(id, jobInstance, new JobParameters());
+        executions.add(execution);
+        return execution;
+    }
+
+    private static StepExecution step(long id, String name, JobExecution jobExecution, BatchStatus status) {
+        StepExecution stepExecution = new StepExecution(id, name, jobExecution);
+        stepExecution.setStatus(status);
+        jobExecution.addStepExecution(stepExecution);
+        return stepExecution;
+    }
+
+    // Repositorio con todas las ejecuciones del job instance del test
+    private class InstanceRepository extends ResourcelessJobRepository {
+
+        @Override
+        public List<JobExecution> getJobExecutions(JobInstance instance) {
+            return executions;
+        }
+    }
+}
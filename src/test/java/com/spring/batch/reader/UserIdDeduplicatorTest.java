@@ -0,0 +1,121 @@
+package com.spring.batch.reader;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.repository.support.ResourcelessJobRepository;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Con winner=CSV open() no consulta la BD: el DataSource no llega a usarse.
+ */
+class UserIdDeduplicatorTest {
+
+    private static final String CSV = UserHighWaterMarks.CSV_SOURCE;
+    private static final String DB = UserHighWaterMarks.DB_SOURCE;
+
+    @Test
+    void csvWinnerDiscardsDatabaseDuplicates() {
+        UserIdDeduplicator deduplicator = deduplicator(true, UserIdDeduplicator.Winner.CSV);
+        deduplicator.open();
+
+        assertTrue(deduplicator.accept(CSV, 1L));
+        assertTrue(deduplicator.accept(CSV, 70_000L));
+        assertTrue(deduplicator.accept(CSV, -5L));
+        assertTrue(deduplicator.accept(CSV, 1L << 40));
+
+        assertFalse(deduplicator.accept(DB, 1L));
+        assertFalse(deduplicator.accept(DB, 70_000L));
+        assertFalse(deduplicator.accept(DB, -5L));
+        assertFalse(deduplicator.accept(DB, 1L << 40));
+        assertTrue(deduplicator.accept(DB, 2L));
+        assertTrue(deduplicator.accept(DB, 65_536L));
+        assertTrue(deduplicator.accept(DB, null));
+        assertEquals(4L, deduplicator.duplicates());
+    }
+
+    @Test
+    void openStartsAgainWithoutIds() {
+        UserIdDeduplicator deduplicator = deduplicator(true, UserIdDeduplicator.Winner.CSV);
+        deduplicator.open();
+        deduplicator.accept(CSV, 1L);
+        deduplicator.accept(DB, 1L);
+
+        deduplicator.open();
+
+        assertEquals(0L, deduplicator.duplicates());
+        assertTrue(deduplicator.accept(DB, 1L));
+    }
+
+    @Test
+    void disabledAcceptsEverything() {
+        UserIdDeduplicator deduplicator = deduplicator(false, UserIdDeduplicator.Winner.DATABASE);
+        deduplicator.open();
+
+        assertTrue(deduplicator.accept(CSV, 1L));
+        assertTrue(deduplicator.accept(DB, 1L));
+        assertEquals(0L, deduplicator.duplicates());
+    }
+
+    @Test
+    void csvWinnerRequiresSequentialMode() {
+        UserIdDeduplicator deduplicator = deduplicator(true, UserIdDeduplicator.Winner.CSV);
+
+        deduplicator.checkMode(CompositeUserReader.Mode.SEQUENTIAL);
+        for (CompositeUserReader.Mode mode : CompositeUserReader.Mode.values()) {
+            if (mode != CompositeUserReader.Mode.SEQUENTIAL) {
+                assertThrows(IllegalStateException.class, () -> deduplicator.checkMode(mode));
+            }
+        }
+    }
+
+    @Test
+    void concurrentCsvReadsAreAllSeenByTheDatabaseSource() throws Exception {
+        int threads = 4;
+        int idsPerThread = 100_000;
+        UserIdDeduplicator deduplicator = deduplicator(true, UserIdDeduplicator.Winner.CSV);
+        deduplicator.open();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long first = (long) t * idsPerThread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (long id = first; id < first + idsPerThread; id++) {
+                        deduplicator.accept(CSV, id);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (long id = 0; id < (long) threads * idsPerThread; id++) {
+            assertFalse(deduplicator.accept(DB, id), "id " + id);
+        }
+        assertEquals((long) threads * idsPerThread, deduplicator.duplicates());
+    }
+
+    private static UserIdDeduplicator deduplicator(boolean enabled, UserIdDeduplicator.Winner winner) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:dedup");
+        return new UserIdDeduplicator(dataSource, new UserHighWaterMarks(dataSource, new ResourcelessJobRepository(), false), enabled, winner, 1000);
+    }
+}